@@ -30,7 +30,7 @@ public abstract class AbstractProblem implements IParser {
     /**
      * A seed for random purpose
      */
-    @Option(name = "-seed", usage = "Seed for Shuffle propagation engine.", required = false)
+    @Option(name = "-seed", usage = "Seed for random purposes (grid generation, random search strategies).", required = false)
     protected long seed = 29091981;
 
     /**
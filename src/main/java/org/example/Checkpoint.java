@@ -0,0 +1,145 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** An append-only log of the grids rated by a run, used to resume the run after the JVM has been killed.
+ * The file starts with a header describing the run, then one line per grid "index DIFFICULTY grid time".
+ * The grids being seeded by their index, the indices logged are all the random state there is to restore.
+ * The file is only synced to the disk every few grids, a line torn by a kill is dropped on resume */
+public class Checkpoint implements Closeable {
+
+    /** A rated grid read back from the log */
+    public static class Record {
+        public final long index;
+        public final GridDifficulty difficulty;
+        public final int[][] grid;
+        public final float time;
+
+        Record(long index, GridDifficulty difficulty, int[][] grid, float time) {
+            this.index = index;
+            this.difficulty = difficulty;
+            this.grid = grid;
+            this.time = time;
+        }
+    }
+
+    private final FileChannel channel;
+    private final int syncEvery;
+    private int unsynced = 0;
+    private boolean closed = false;
+    private List<Record> recovered = Collections.emptyList();
+
+    /**
+     * @param header    describes the run, resuming from a log of another run is refused
+     * @param resume    continues the existing log instead of starting a new one
+     * @param overwrite starts a new log over an existing one, which is refused otherwise so that a run forgetting
+     *                  -resume does not wipe the previous one
+     * @param syncEvery amount of grids appended between two syncs to the disk
+     */
+    public Checkpoint(Path file, String header, boolean resume, boolean overwrite, int syncEvery)
+            throws IOException {
+        this.syncEvery = Math.max(1, syncEvery);
+        if (!resume && !overwrite && Files.exists(file) && Files.size(file) > 0) {
+            throw new IOException(file + " already logs a run, continue it with -resume or start over with"
+                    + " -overwriteCheckpoint");
+        }
+        if (resume && Files.exists(file)) {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover(file, header);
+        } else {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            write(header + "\n");
+            channel.force(false);
+        }
+    }
+
+    /** Reads the complete lines of the log and cuts the file after the last one so that appends start clean */
+    private void recover(Path file, String header) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        List<Record> records = new ArrayList<>();
+        int validLength = 0;
+        int lineStart = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] != '\n') {
+                continue;
+            }
+            String line = new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8);
+            if (lineStart == 0) {
+                if (!line.equals(header)) {
+                    throw new IOException("The checkpoint was written by another run: " + line);
+                }
+            } else {
+                Record record = parse(line);
+                if (record == null) {
+                    break;
+                }
+                records.add(record);
+            }
+            lineStart = i + 1;
+            validLength = lineStart;
+        }
+        if (validLength == 0) {
+            throw new IOException("The checkpoint has no header");
+        }
+
+        channel.truncate(validLength);
+        channel.position(validLength);
+        recovered = records;
+    }
+
+    private static Record parse(String line) {
+        String[] fields = line.split(" ");
+        if (fields.length != 4 || fields[2].length() != PlayableGridGenerator.SIZE * PlayableGridGenerator.SIZE) {
+            return null;
+        }
+        try {
+            return new Record(Long.parseLong(fields[0]), GridDifficulty.valueOf(fields[1]),
+                    PlayableGridGenerator.fromString(fields[2]), Float.parseFloat(fields[3]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** @return the grids read back from the log when resuming */
+    public List<Record> getRecovered() {
+        return recovered;
+    }
+
+    public synchronized void append(long index, GridDifficulty difficulty, int[][] grid, float time)
+            throws IOException {
+        write(index + " " + difficulty + " " + PlayableGridGenerator.toString(grid) + " " + time + "\n");
+        if (++unsynced >= syncEvery) {
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    private void write(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /** Syncs what is left and closes the log, it is safe to call several times (e.g. from a shutdown hook) */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        channel.force(false);
+        channel.close();
+    }
+}
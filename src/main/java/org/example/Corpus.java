@@ -0,0 +1,220 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A set of rated grids, without duplicates, that can be written to and read from a file.
+ * The file starts with a header counting the grids of each difficulty, then one line per grid
+ * "index DIFFICULTY grid", the grids being grouped by difficulty and sorted by their index in the run.
+ * A grid whose difficulty was inherited from the grid it was transformed from instead of being rated has a fourth
+ * field "inherited" */
+public class Corpus {
+
+    /** A rated grid and its index in the run that generated it */
+    public static class Entry {
+        public final long index;
+        public final GridDifficulty difficulty;
+        public final String grid;
+        /** Whether the difficulty was inherited rather than rated */
+        public final boolean inherited;
+
+        Entry(long index, GridDifficulty difficulty, String grid, boolean inherited) {
+            this.index = index;
+            this.difficulty = difficulty;
+            this.grid = grid;
+            this.inherited = inherited;
+        }
+    }
+
+    private static final String HEADER = "# corpus";
+    private static final String INHERITED = "inherited";
+
+    /** Writes rated grids to a corpus file as they come, without keeping them: the lines go to one temporary file
+     * per difficulty, which are joined behind the header on close. The grids have to be added by increasing index,
+     * and the duplicates are not dropped (the merge of the main method drops them) */
+    public static class Writer implements Closeable {
+        private final Path file;
+        private final Map<GridDifficulty, Path> parts = new EnumMap<>(GridDifficulty.class);
+        private final Map<GridDifficulty, BufferedWriter> writers = new EnumMap<>(GridDifficulty.class);
+        private final Map<GridDifficulty, Long> counts = new EnumMap<>(GridDifficulty.class);
+
+        public Writer(Path file) throws IOException {
+            this.file = file;
+            try {
+                for (GridDifficulty difficulty : GridDifficulty.values()) {
+                    Path part = file.resolveSibling(file.getFileName() + "." + difficulty + ".part");
+                    parts.put(difficulty, part);
+                    writers.put(difficulty, Files.newBufferedWriter(part, StandardCharsets.UTF_8));
+                    counts.put(difficulty, 0L);
+                }
+            } catch (IOException e) {
+                discard();
+                throw e;
+            }
+        }
+
+        public void add(long index, GridDifficulty difficulty, int[][] grid) throws IOException {
+            BufferedWriter writer = writers.get(difficulty);
+            writer.write(index + " " + difficulty + " " + PlayableGridGenerator.toString(grid));
+            writer.newLine();
+            counts.merge(difficulty, 1L, Long::sum);
+        }
+
+        /** Writes the header and the grids grouped by difficulty, then deletes the temporary files */
+        @Override
+        public void close() throws IOException {
+            try {
+                for (BufferedWriter writer : writers.values()) {
+                    writer.close();
+                }
+                StringBuilder header = new StringBuilder(HEADER);
+                for (GridDifficulty difficulty : GridDifficulty.values()) {
+                    header.append(' ').append(difficulty).append('=').append(counts.get(difficulty));
+                }
+                header.append(System.lineSeparator());
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    out.write(header.toString().getBytes(StandardCharsets.UTF_8));
+                    for (Path part : parts.values()) {
+                        Files.copy(part, out);
+                    }
+                }
+            } finally {
+                discard();
+            }
+        }
+
+        private void discard() throws IOException {
+            for (BufferedWriter writer : writers.values()) {
+                writer.close();
+            }
+            for (Path part : parts.values()) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    // Grids are keyed by their 81 digits, which is what removes the duplicates
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** Adds a grid, a grid already in the corpus only keeps its smallest index
+     * @return false if the grid was already in the corpus */
+    public boolean add(long index, GridDifficulty difficulty, int[][] grid) {
+        return add(index, difficulty, grid, false);
+    }
+
+    /** Adds a grid, a grid already in the corpus keeps its rated difficulty over an inherited one, then its smallest
+     * index
+     * @param inherited whether the difficulty was inherited rather than rated
+     * @return false if the grid was already in the corpus */
+    public boolean add(long index, GridDifficulty difficulty, int[][] grid, boolean inherited) {
+        return add(new Entry(index, difficulty, PlayableGridGenerator.toString(grid), inherited));
+    }
+
+    private boolean add(Entry entry) {
+        Entry existing = entries.get(entry.grid);
+        if (existing == null
+                || (existing.inherited && !entry.inherited)
+                || (existing.inherited == entry.inherited && entry.index < existing.index)) {
+            entries.put(entry.grid, entry);
+        }
+        return existing == null;
+    }
+
+    /** Adds all the grids of another corpus, duplicates are dropped */
+    public void addAll(Corpus other) {
+        for (Entry entry : other.entries.values()) {
+            add(entry);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** @return the grids of the given difficulty, rated and inherited, sorted by index */
+    public List<Entry> get(GridDifficulty difficulty) {
+        List<Entry> grids = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.difficulty == difficulty) {
+                grids.add(entry);
+            }
+        }
+        grids.sort(Comparator.comparingLong(e -> e.index));
+        return grids;
+    }
+
+    public void write(Path file) throws IOException {
+        Map<GridDifficulty, List<Entry>> byDifficulty = new EnumMap<>(GridDifficulty.class);
+        StringBuilder header = new StringBuilder(HEADER);
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            byDifficulty.put(difficulty, get(difficulty));
+            header.append(' ').append(difficulty).append('=').append(byDifficulty.get(difficulty).size());
+        }
+        long inherited = entries.values().stream().filter(e -> e.inherited).count();
+        if (inherited > 0) {
+            header.append(' ').append(INHERITED).append('=').append(inherited);
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(header.toString());
+            writer.newLine();
+            for (List<Entry> grids : byDifficulty.values()) {
+                for (Entry entry : grids) {
+                    writer.write(entry.index + " " + entry.difficulty + " " + entry.grid
+                            + (entry.inherited ? " " + INHERITED : ""));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    public static Corpus read(Path file) throws IOException {
+        Corpus corpus = new Corpus();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(" ");
+                boolean inherited = fields.length == 4 && fields[3].equals(INHERITED);
+                if (fields.length != 3 && !inherited) {
+                    throw new IOException("Malformed corpus line in " + file + ": " + line);
+                }
+                corpus.add(new Entry(Long.parseLong(fields[0]), GridDifficulty.valueOf(fields[1]), fields[2],
+                        inherited));
+            }
+        }
+        return corpus;
+    }
+
+    /** Merges corpus files (e.g. the ones written by the shards of a run) into a single deduplicated corpus.
+     * Usage: Corpus output input1 input2 ... */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("java " + Corpus.class.getName() + " output input1 [input2 ...]");
+            return;
+        }
+        Corpus merged = new Corpus();
+        int read = 0;
+        for (int i = 1; i < args.length; i++) {
+            Corpus shard = read(Path.of(args[i]));
+            read += shard.size();
+            merged.addAll(shard);
+        }
+        merged.write(Path.of(args[0]));
+        System.out.println("Merged " + read + " grids into " + merged.size() + " distinct grids");
+    }
+}
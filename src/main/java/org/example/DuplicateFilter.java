@@ -0,0 +1,190 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.example.PlayableGridGenerator.SIZE;
+
+/** A Bloom filter of the grids already produced, to drop duplicates before they are rated without keeping the grids.
+ * It is sized from the expected amount of grids and the accepted rate of false positives (a new grid taken for a
+ * duplicate and dropped), about 1.2 bytes per grid at 1%, 1.8 bytes at 0.1%. Past the expected amount, the rate
+ * of false positives grows quickly: the filter counts the grids added and tells when it is full.
+ * The bits can live in a memory-mapped file, the filter then carries over to the next runs: it has to be sized for
+ * all of them, the header of the file keeps the sizing and the amount of grids added */
+public class DuplicateFilter implements Closeable {
+    private static final long MAGIC = 0x5355444f4b55424dL;
+    /** magic, bits, hashes, expected, false positive rate, grids added */
+    private static final int HEADER = 6 * Long.BYTES;
+    private static final int ADDED = 5 * Long.BYTES;
+
+    private final ByteBuffer buffer;
+    private final long bits;
+    private final int hashes;
+    private final long expected;
+    private final double falsePositiveRate;
+    private long added;
+
+    /** A filter in the heap */
+    public DuplicateFilter(long expected, double falsePositiveRate) {
+        this.expected = Math.max(1, expected);
+        this.falsePositiveRate = falsePositiveRate;
+        this.bits = bits(this.expected, falsePositiveRate);
+        this.hashes = hashes(this.expected, bits);
+        this.buffer = ByteBuffer.allocate(size(bits));
+        writeHeader();
+    }
+
+    /** A filter in a memory-mapped file, created if it does not exist. An existing file keeps its own sizing */
+    public DuplicateFilter(Path file, long expected, double falsePositiveRate) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if (channel.size() >= HEADER) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                channel.read(header, 0);
+                header.flip();
+                if (header.getLong() != MAGIC) {
+                    throw new IOException(file + " is not a duplicate filter");
+                }
+                this.bits = header.getLong();
+                this.hashes = (int) header.getLong();
+                this.expected = header.getLong();
+                this.falsePositiveRate = header.getDouble();
+                this.added = header.getLong();
+                if (channel.size() != size(bits)) {
+                    throw new IOException("The duplicate filter " + file + " is truncated");
+                }
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(bits));
+            } else {
+                this.expected = Math.max(1, expected);
+                this.falsePositiveRate = falsePositiveRate;
+                this.bits = bits(this.expected, falsePositiveRate);
+                this.hashes = hashes(this.expected, bits);
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(bits));
+                writeHeader();
+            }
+        }
+    }
+
+    private static long bits(long expected, double falsePositiveRate) {
+        double optimal = -expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        // Rounded up to whole longs
+        return (((long) Math.ceil(optimal) + 63) / 64) * 64;
+    }
+
+    private static int hashes(long expected, long bits) {
+        return Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+    }
+
+    private static int size(long bits) {
+        long size = HEADER + bits / 8;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The duplicate filter would need " + size + " bytes, over 2 GB");
+        }
+        return (int) size;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(0, MAGIC);
+        buffer.putLong(Long.BYTES, bits);
+        buffer.putLong(2 * Long.BYTES, hashes);
+        buffer.putLong(3 * Long.BYTES, expected);
+        buffer.putDouble(4 * Long.BYTES, falsePositiveRate);
+        buffer.putLong(ADDED, added);
+    }
+
+    /** @return the amount of grids the filter was sized for */
+    public long getExpected() {
+        return expected;
+    }
+
+    /** @return the amount of distinct grids added so far, in this run and the previous ones */
+    public long getAdded() {
+        return added;
+    }
+
+    /** @return whether the filter holds as many grids as it was sized for, any grid added from then on takes the
+     * rate of false positives over the one asked for */
+    public boolean isFull() {
+        return added >= expected;
+    }
+
+    /** @return the current rate of false positives, estimated from the amount of grids added */
+    public double getFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * added / bits), hashes);
+    }
+
+    /** @return the rate of false positives the filter was sized for */
+    public double getDesignFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /** @return whether the grid is (most probably) in the filter, without adding it */
+    public synchronized boolean mightContain(int[][] grid) {
+        long hash = hash(grid);
+        for (int k = 0; k < hashes; k++) {
+            long bit = position(hash, k);
+            if ((buffer.get(HEADER + (int) (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Adds the grid to the filter
+     * @return false if the grid was (most probably) already in it */
+    public synchronized boolean add(int[][] grid) {
+        long hash = hash(grid);
+        boolean fresh = false;
+        for (int k = 0; k < hashes; k++) {
+            long bit = position(hash, k);
+            int index = HEADER + (int) (bit >>> 3);
+            byte before = buffer.get(index);
+            byte after = (byte) (before | (1 << (bit & 7)));
+            if (after != before) {
+                buffer.put(index, after);
+                fresh = true;
+            }
+        }
+        if (fresh) {
+            added++;
+            buffer.putLong(ADDED, added);
+        }
+        return fresh;
+    }
+
+    private static long hash(int[][] grid) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                hash = (hash ^ grid[i][j]) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    /** The positions are derived from two hashes (h1 + k * h2), which is as good as k independent hashes */
+    private long position(long hash, int k) {
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        return Long.remainderUnsigned(h1 + k * h2, bits);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Writes a memory-mapped filter back to its file */
+    @Override
+    public synchronized void close() {
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import java.util.Collections;
+
+import static org.example.PlayableGridGenerator.EMPTY;
+import static org.example.PlayableGridGenerator.SIZE;
+
+/** This class predicts the model level the rating cascade can start at, from features that are cheap to compute:
+ * the naked singles available in the grid as given, and how far the singles eliminations get.
+ * The clue count and the amount of candidates left once the singles are stuck tell nothing on generated grids: the
+ * removal stops at 55 numbers so almost all have 26 clues, and the candidates left are spread the same way over
+ * the four difficulties, they are not used.
+ * On generated grids, the easy model almost never solves without failing a grid where the singles get stuck (about
+ * 5% of them) or a grid that needs hidden singles and has no naked single to start with (about 6%), so these grids
+ * skip the easy model. The singles tell nothing reliable about the hard model, the medium model is never skipped.
+ * A misprediction rates a grid one level harder than the full cascade would, -verifyPrediction measures how often */
+public class LevelPredictor {
+    private final BatchCandidateEliminator eliminator = new BatchCandidateEliminator(1);
+
+    public ModelLevel predict(int[][] grid) {
+        switch (eliminator.evaluate(Collections.singletonList(grid))[0]) {
+            case SOLVED_BY_NAKED_SINGLES:
+            case CONTRADICTION:
+                return ModelLevel.EASY;
+            case SOLVED_BY_SINGLES:
+                return nakedSingles(grid) > 0 ? ModelLevel.EASY : ModelLevel.MEDIUM;
+            default:
+                return ModelLevel.MEDIUM;
+        }
+    }
+
+    /** @return the amount of empty cells with a single candidate in the grid as given */
+    static int nakedSingles(int[][] grid) {
+        int singles = 0;
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (grid[i][j] != EMPTY) {
+                    continue;
+                }
+                int used = 0;
+                for (int k = 0; k < SIZE; k++) {
+                    used |= 1 << grid[i][k];
+                    used |= 1 << grid[k][j];
+                    used |= 1 << grid[i - i % 3 + k / 3][j - j % 3 + k % 3];
+                }
+                // Bit 0 is the empty value, bits 1 to 9 the values used around the cell
+                if (Integer.bitCount(~used & 0x3FE) == 1) {
+                    singles++;
+                }
+            }
+        }
+        return singles;
+    }
+}
@@ -0,0 +1,296 @@
+package org.example;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/** End-to-end benchmark of the generate, thin and rate pipeline of {@link Sudoku#main}.
+ * It generates grids from a fixed seed, then rates a frozen set of reference grids, and writes a report
+ * (a properties file) of the throughput, the CPU time per difficulty, the peak heap and the GC time.
+ * The report is compared with a stored baseline: the run fails when the amount of grids of a difficulty changes or
+ * when a grid is rated differently, which means the pipeline itself changed. The timings only mean something against
+ * a baseline made on the same machine (the baseline records which one): they are then compared too, as warnings,
+ * or as failures with -timingGate.
+ * Run with: mvn clean compile exec:java -Pbenchmark */
+public class MacroBenchmark {
+
+    @Option(name = "-grids", usage = "Amount of grids generated from the fixed seed.")
+    int grids = 200;
+
+    @Option(name = "-warmup", usage = "Amount of grids generated beforehand to warm the JIT up.")
+    int warmup = 20;
+
+    @Option(name = "-repeat", usage = "Amount of passes over the reference grids, the fastest one is kept.")
+    int repeat = 3;
+
+    @Option(name = "-rounds", usage = "Amount of times every reference grid is rated in a pass, for the pass to last long enough to be timed.")
+    int rounds = 20;
+
+    @Option(name = "-seed", usage = "Seed of the generated grids.")
+    long seed = 29091981;
+
+    @Option(name = "-removalBatch", usage = "First batch size of the numbers removed together from a full grid (1 removes them one by one).")
+    int removalBatch = PlayableGridGenerator.DEFAULT_REMOVAL_BATCH;
+
+    @Option(name = "-reference", usage = "Frozen set of rated grids (a corpus file) rated again by the benchmark.")
+    File reference = new File("benchmark/reference-grids.txt");
+
+    @Option(name = "-baseline", usage = "Report the run is compared with.")
+    File baseline = new File("benchmark/baseline.properties");
+
+    @Option(name = "-report", usage = "Report written by the run.")
+    File report = new File("target/benchmark-report.properties");
+
+    @Option(name = "-threshold", usage = "Percentage a timing can be worse than the baseline before it is reported.")
+    double threshold = 25;
+
+    @Option(name = "-timingGate", usage = "Fails the run on timings worse than the threshold, when the baseline was made on this machine.")
+    boolean timingGate = false;
+
+    @Option(name = "-updateBaseline", usage = "Writes the report as the new baseline instead of comparing.")
+    boolean updateBaseline = false;
+
+    /** Key of the baseline naming the machine it was made on */
+    private static final String MACHINE = "machine";
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<String, Double> metrics = new TreeMap<>();
+
+    public static void main(String[] args) throws IOException {
+        MacroBenchmark benchmark = new MacroBenchmark();
+        CmdLineParser parser = new CmdLineParser(benchmark);
+        try {
+            parser.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            parser.printUsage(System.err);
+            return;
+        }
+        if (!benchmark.run()) {
+            System.exit(1);
+        }
+    }
+
+    /** @return false if the run regressed compared with the baseline */
+    boolean run() throws IOException {
+        Sudoku sudoku = new Sudoku();
+        sudoku.seed = seed;
+        SudokuGridGenerator fullGridGenerator = new SudokuGridGenerator();
+        PlayableGridGenerator playableGridGenerator = new PlayableGridGenerator(sudoku);
+        playableGridGenerator.setRemovalBatch(removalBatch);
+
+        // The warm-up grids come after the measured ones in the run, so they are different grids
+        for (int i = 0; i < warmup; i++) {
+            sudoku.rate(sudoku.generate(grids + i, fullGridGenerator, playableGridGenerator));
+        }
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long gcTimeBefore = gcTime();
+
+        // Generation: the CPU time of the whole pipeline of a grid is charged to the difficulty it gets
+        Map<GridDifficulty, long[]> generation = new EnumMap<>(GridDifficulty.class);
+        long start = System.nanoTime();
+        for (int i = 0; i < grids; i++) {
+            long cpu = threads.getCurrentThreadCpuTime();
+            GridDifficulty difficulty = sudoku.rate(sudoku.generate(i, fullGridGenerator, playableGridGenerator));
+            add(generation, difficulty, threads.getCurrentThreadCpuTime() - cpu);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        metrics.put("generation.gridsPerSecond", grids / seconds);
+        record("generation", generation);
+
+        // Reference set: rating alone, the difficulties must be the frozen ones. A grid takes a few milliseconds to
+        // rate, so a pass rates the whole set several rounds to last seconds, and the fastest pass is kept. The
+        // counts are the ones of a single round
+        Map<GridDifficulty, long[]> rating = null;
+        Map<GridDifficulty, long[]> counts = new EnumMap<>(GridDifficulty.class);
+        int changes = 0;
+        Corpus corpus = Corpus.read(reference.toPath());
+        for (int pass = 0; pass < repeat; pass++) {
+            Map<GridDifficulty, long[]> passRating = new EnumMap<>(GridDifficulty.class);
+            for (int round = 0; round < rounds; round++) {
+                for (GridDifficulty expected : GridDifficulty.values()) {
+                    for (Corpus.Entry entry : corpus.get(expected)) {
+                        long cpu = threads.getCurrentThreadCpuTime();
+                        GridDifficulty difficulty = sudoku.rate(PlayableGridGenerator.fromString(entry.grid));
+                        add(passRating, difficulty, threads.getCurrentThreadCpuTime() - cpu);
+                        if (pass == 0 && round == 0) {
+                            add(counts, difficulty, 0);
+                            if (difficulty != expected) {
+                                changes++;
+                            }
+                        }
+                    }
+                }
+            }
+            if (rating == null || totalTime(passRating) < totalTime(rating)) {
+                rating = passRating;
+            }
+        }
+        record("reference", rating);
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            metrics.put("reference.count." + difficulty, (double) counts.getOrDefault(difficulty, new long[2])[0]);
+        }
+        metrics.put("reference.ratingChanges", (double) changes);
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        metrics.put("jvm.peakHeapMb", peakHeap / (1024.0 * 1024.0));
+        metrics.put("jvm.gcTimeMs", (double) (gcTime() - gcTimeBefore));
+
+        File output = updateBaseline ? baseline : report;
+        write(output);
+        System.out.println("Machine: " + machine());
+        metrics.forEach((key, value) -> System.out.printf("%-40s %12.3f%n", key, value));
+        System.out.println("Report written to " + output);
+        return updateBaseline || compare();
+    }
+
+    private static long totalTime(Map<GridDifficulty, long[]> times) {
+        long total = 0;
+        for (long[] countAndTime : times.values()) {
+            total += countAndTime[1];
+        }
+        return total;
+    }
+
+    private static void add(Map<GridDifficulty, long[]> times, GridDifficulty difficulty, long cpuNanos) {
+        long[] countAndTime = times.computeIfAbsent(difficulty, d -> new long[2]);
+        countAndTime[0]++;
+        countAndTime[1] += cpuNanos;
+    }
+
+    /** Records the amount of grids and the mean CPU time of each difficulty */
+    private void record(String phase, Map<GridDifficulty, long[]> times) {
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            long[] countAndTime = times.getOrDefault(difficulty, new long[2]);
+            metrics.put(phase + ".count." + difficulty, (double) countAndTime[0]);
+            if (countAndTime[0] > 0) {
+                metrics.put(phase + ".cpuMsPerGrid." + difficulty, countAndTime[1] / 1e6 / countAndTime[0]);
+            }
+        }
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private void write(File file) throws IOException {
+        if (file.getParentFile() != null) {
+            Files.createDirectories(file.getParentFile().toPath());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("# Macro-benchmark report: grids=" + grids + " seed=" + seed + " reference=" + reference
+                    + " rounds=" + rounds + " removalBatch=" + removalBatch);
+            writer.newLine();
+            writer.write(MACHINE + "=" + machine());
+            writer.newLine();
+            for (Map.Entry<String, Double> metric : metrics.entrySet()) {
+                writer.write(metric.getKey() + "=" + metric.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    /** The machine and JVM the timings were measured on */
+    private static String machine() {
+        String cpu = "";
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/cpuinfo"))) {
+                if (line.startsWith("model name")) {
+                    cpu = line.substring(line.indexOf(':') + 1).trim();
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Not on Linux, the other properties tell the machine apart
+        }
+        return (System.getProperty("os.name") + " " + System.getProperty("os.arch") + " "
+                + Runtime.getRuntime().availableProcessors() + " cpus " + cpu + " "
+                + System.getProperty("java.vm.name") + " " + System.getProperty("java.version"))
+                .replaceAll("\\s+", " ");
+    }
+
+    /** Compares the metrics with the baseline: the counts must be equal. If the baseline was made on this machine,
+     * the throughput must not drop and the times and memory must not grow by more than the threshold, which fails the
+     * run with -timingGate and is only reported otherwise
+     * @return false if a metric regressed */
+    private boolean compare() throws IOException {
+        if (!baseline.exists()) {
+            System.out.println("No baseline at " + baseline + ", nothing to compare with");
+            return true;
+        }
+        Properties expected = new Properties();
+        try (Reader reader = Files.newBufferedReader(baseline.toPath(), StandardCharsets.UTF_8)) {
+            expected.load(reader);
+        }
+
+        boolean sameMachine = machine().equals(expected.getProperty(MACHINE));
+        if (!sameMachine) {
+            System.out.println("The baseline was made on another machine (" + expected.getProperty(MACHINE)
+                    + "), only the counts are compared. Make one on this machine with -updateBaseline -baseline <file>");
+        }
+        boolean passed = true;
+        for (String key : expected.stringPropertyNames()) {
+            if (key.equals(MACHINE)) {
+                continue;
+            }
+            boolean count = key.contains(".count.") || key.endsWith("ratingChanges");
+            if (!count && !sameMachine) {
+                continue;
+            }
+            double before = Double.parseDouble(expected.getProperty(key));
+            Double after = metrics.get(key);
+            String verdict;
+            if (after == null) {
+                verdict = "MISSING";
+            } else if (count) {
+                verdict = after.equals(before) ? null : "CHANGED";
+            } else if (key.endsWith("PerSecond")) {
+                verdict = after < before * (1 - threshold / 100) ? "SLOWER" : null;
+            } else {
+                // The GC time can be 0 in the baseline, it gets a 10 ms margin
+                double allowed = before * (1 + threshold / 100) + (key.endsWith("gcTimeMs") ? 10 : 0);
+                verdict = after > allowed ? "HIGHER" : null;
+            }
+            if (verdict == null) {
+                continue;
+            }
+            if (count || timingGate || after == null) {
+                passed = false;
+                System.out.println("REGRESSION " + verdict + " " + key + ": baseline " + before + ", now " + after);
+            } else {
+                System.out.println("WARNING " + verdict + " " + key + ": baseline " + before + ", now " + after);
+            }
+        }
+        System.out.println(passed ? "No regression against " + baseline : "Regressions against " + baseline);
+        return passed;
+    }
+}
@@ -0,0 +1,107 @@
+package org.example;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.chocosolver.solver.search.strategy.Search.domOverWDegSearch;
+import static org.chocosolver.util.tools.ArrayUtils.append;
+import static org.example.PlayableGridGenerator.EMPTY;
+import static org.example.PlayableGridGenerator.SIZE;
+
+/** This class thins a unique-solution grid down to a minimal one: a grid where no clue can be removed without
+ * losing the uniqueness of the solution.
+ * Since the solution is known, a clue is necessary if and only if the other clues allow a solution with a different
+ * value in its cell, so each check is a single satisfiability search instead of a count of all the solutions.
+ * All the checks share one model where the clues are posted as constraints and unposted when removed, so the
+ * all-different constraints are only built once and the dom/wdeg failure weights they gather carry over from one
+ * check to the next. A clue found necessary stays necessary once other clues are removed, so a single pass over
+ * the clues is enough to reach a minimal grid */
+public class MinimalGridReducer {
+    private final Model model;
+    private final IntVar[][] cells;
+
+    public MinimalGridReducer() {
+        model = new Model();
+        cells = new IntVar[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                cells[i][j] = model.intVar("c_" + i + "_" + j, 1, SIZE, false);
+            }
+        }
+
+        for (int i = 0; i < SIZE; i++) {
+            IntVar[] row = new IntVar[SIZE];
+            IntVar[] col = new IntVar[SIZE];
+            IntVar[] box = new IntVar[SIZE];
+            for (int j = 0; j < SIZE; j++) {
+                row[j] = cells[i][j];
+                col[j] = cells[j][i];
+                box[j] = cells[(i / 3) * 3 + j / 3][(i % 3) * 3 + j % 3];
+            }
+            model.allDifferent(row, "AC").post();
+            model.allDifferent(col, "AC").post();
+            model.allDifferent(box, "AC").post();
+        }
+        model.getSolver().setSearch(domOverWDegSearch(append(cells)));
+    }
+
+    /** Removes the unnecessary clues of the grid, tried in a random order, the grid is modified in place.
+     * @param grid     a grid with a unique solution
+     * @param solution the solution of the grid
+     * @return the amount of clues removed */
+    public int minimize(int[][] grid, int[][] solution, Random random) {
+        Solver solver = model.getSolver();
+        Constraint[][] clues = new Constraint[SIZE][SIZE];
+        List<int[]> clueCells = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (grid[i][j] != EMPTY) {
+                    clues[i][j] = model.arithm(cells[i][j], "=", grid[i][j]);
+                    clues[i][j].post();
+                    clueCells.add(new int[]{i, j});
+                }
+            }
+        }
+        Collections.shuffle(clueCells, random);
+
+        int removed = 0;
+        for (int[] cell : clueCells) {
+            int i = cell[0];
+            int j = cell[1];
+
+            // Is there a solution of the other clues with another value in this cell?
+            model.unpost(clues[i][j]);
+            Constraint otherValue = model.arithm(cells[i][j], "!=", solution[i][j]);
+            otherValue.post();
+            boolean necessary = solver.solve();
+            solver.reset();
+            model.unpost(otherValue);
+
+            if (necessary) {
+                clues[i][j] = model.arithm(cells[i][j], "=", grid[i][j]);
+                clues[i][j].post();
+            } else {
+                grid[i][j] = EMPTY;
+                clues[i][j] = null;
+                removed++;
+            }
+        }
+
+        // The model is left without clues for the next grid
+        for (Constraint[] row : clues) {
+            for (Constraint clue : row) {
+                if (clue != null) {
+                    model.unpost(clue);
+                }
+            }
+        }
+        return removed;
+    }
+}
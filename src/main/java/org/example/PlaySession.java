@@ -0,0 +1,237 @@
+package org.example;
+
+import static org.example.PlayableGridGenerator.EMPTY;
+import static org.example.PlayableGridGenerator.SIZE;
+
+/** The state of a grid being played, for the game client: it checks moves, shows candidates and gives hints.
+ * The grid is solved once with the medium model when the session starts. After that every answer comes from the
+ * digits placed in each row, column and box, which are counted and updated on each move, so no model is built again
+ * and every call is a few hundred operations at most */
+public class PlaySession {
+
+    /** Why a hint was given */
+    public enum HintReason {
+        /** The digit of the cell is wrong, the hint gives the right one */
+        WRONG_ENTRY,
+        /** The cell has a single candidate left */
+        NAKED_SINGLE,
+        /** The value has a single place left in a row, column or box */
+        HIDDEN_SINGLE,
+        /** Nothing can be deduced by singles, the hint gives the value of the cell with the fewest candidates */
+        SOLUTION
+    }
+
+    /** A value to place in a cell and why */
+    public static class Hint {
+        public final int row;
+        public final int col;
+        public final int value;
+        public final HintReason reason;
+
+        Hint(int row, int col, int value, HintReason reason) {
+            this.row = row;
+            this.col = col;
+            this.value = value;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return reason + ": " + value + " at row " + (row + 1) + ", column " + (col + 1);
+        }
+    }
+
+    private static final int ALL = ((1 << SIZE) - 1) << 1;
+
+    private final int[][] grid = new int[SIZE][SIZE];
+    private final boolean[][] given = new boolean[SIZE][SIZE];
+    private final int[][] solution;
+
+    // counts[unit][value]: how many times the value is placed in the unit, units being the 9 rows, 9 columns, 9 boxes
+    private final int[][] counts = new int[3 * SIZE][SIZE + 1];
+
+    /** Starts a session on a grid with a unique solution */
+    public PlaySession(int[][] puzzle) {
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (puzzle[i][j] != EMPTY) {
+                    given[i][j] = true;
+                    place(i, j, puzzle[i][j]);
+                }
+            }
+        }
+        solution = solve(puzzle);
+    }
+
+    private static int[][] solve(int[][] puzzle) {
+        Sudoku sudoku = new Sudoku();
+        sudoku.targetGrid = puzzle;
+        sudoku.setModelLevel(ModelLevel.MEDIUM);
+        sudoku.buildModel();
+        sudoku.configureSearch();
+        if (!sudoku.getModel().getSolver().solve()) {
+            throw new IllegalArgumentException("The grid has no solution");
+        }
+        int[][] solution = new int[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                solution[i][j] = sudoku.rows[i][j].getValue();
+            }
+        }
+        return solution;
+    }
+
+    /** Places a value in a cell, replacing its previous value
+     * @return whether the value does not conflict with the row, the column and the box of the cell */
+    public boolean set(int row, int col, int value) {
+        if (given[row][col]) {
+            throw new IllegalArgumentException("The cell is part of the grid");
+        }
+        if (value < 1 || value > SIZE) {
+            throw new IllegalArgumentException("Invalid value: " + value);
+        }
+        clear(row, col);
+        boolean consistent = isConsistent(row, col, value);
+        place(row, col, value);
+        return consistent;
+    }
+
+    public void clear(int row, int col) {
+        if (given[row][col]) {
+            throw new IllegalArgumentException("The cell is part of the grid");
+        }
+        int value = grid[row][col];
+        if (value != EMPTY) {
+            counts[row][value]--;
+            counts[SIZE + col][value]--;
+            counts[2 * SIZE + box(row, col)][value]--;
+            grid[row][col] = EMPTY;
+        }
+    }
+
+    private void place(int row, int col, int value) {
+        grid[row][col] = value;
+        counts[row][value]++;
+        counts[SIZE + col][value]++;
+        counts[2 * SIZE + box(row, col)][value]++;
+    }
+
+    /** @return whether the value is placed nowhere else in the row, the column and the box of the cell */
+    public boolean isConsistent(int row, int col, int value) {
+        int self = grid[row][col] == value ? 1 : 0;
+        return counts[row][value] == self
+                && counts[SIZE + col][value] == self
+                && counts[2 * SIZE + box(row, col)][value] == self;
+    }
+
+    /** @return whether the value is the one of the solution */
+    public boolean isCorrect(int row, int col, int value) {
+        return solution[row][col] == value;
+    }
+
+    /** @return the candidates of an empty cell as a bitmask, bit v set if v can still be placed in it */
+    public int candidates(int row, int col) {
+        if (grid[row][col] != EMPTY) {
+            return 0;
+        }
+        int mask = 0;
+        for (int value = 1; value <= SIZE; value++) {
+            if (isConsistent(row, col, value)) {
+                mask |= 1 << value;
+            }
+        }
+        return mask;
+    }
+
+    public boolean isSolved() {
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (grid[i][j] != solution[i][j]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Gives the next value to place: the fix of a wrong entry first, then a naked single, a hidden single, and the
+     * value of the most constrained cell when the singles are stuck
+     * @return null if the grid is solved */
+    public Hint hint() {
+        int[][] candidates = new int[SIZE][SIZE];
+        int bestRow = -1;
+        int bestCol = -1;
+        int bestCount = SIZE + 1;
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (grid[i][j] != EMPTY && grid[i][j] != solution[i][j]) {
+                    return new Hint(i, j, solution[i][j], HintReason.WRONG_ENTRY);
+                }
+                candidates[i][j] = candidates(i, j);
+                int count = Integer.bitCount(candidates[i][j]);
+                if (grid[i][j] == EMPTY && count < bestCount) {
+                    bestCount = count;
+                    bestRow = i;
+                    bestCol = j;
+                }
+            }
+        }
+        if (bestRow < 0) {
+            return null;
+        }
+        if (bestCount == 1) {
+            return new Hint(bestRow, bestCol, solution[bestRow][bestCol], HintReason.NAKED_SINGLE);
+        }
+
+        for (int unit = 0; unit < 3 * SIZE; unit++) {
+            int once = 0;
+            int twice = 0;
+            for (int k = 0; k < SIZE; k++) {
+                int mask = candidates[unitRow(unit, k)][unitCol(unit, k)];
+                twice |= once & mask;
+                once |= mask;
+            }
+            int hidden = once & ~twice & ALL;
+            if (hidden == 0) {
+                continue;
+            }
+            for (int k = 0; k < SIZE; k++) {
+                int row = unitRow(unit, k);
+                int col = unitCol(unit, k);
+                if ((candidates[row][col] & hidden) != 0) {
+                    return new Hint(row, col, solution[row][col], HintReason.HIDDEN_SINGLE);
+                }
+            }
+        }
+
+        return new Hint(bestRow, bestCol, solution[bestRow][bestCol], HintReason.SOLUTION);
+    }
+
+    public int get(int row, int col) {
+        return grid[row][col];
+    }
+
+    private static int box(int row, int col) {
+        return (row / 3) * 3 + col / 3;
+    }
+
+    private static int unitRow(int unit, int k) {
+        if (unit < SIZE) {
+            return unit;
+        }
+        if (unit < 2 * SIZE) {
+            return k;
+        }
+        return ((unit - 2 * SIZE) / 3) * 3 + k / 3;
+    }
+
+    private static int unitCol(int unit, int k) {
+        if (unit < SIZE) {
+            return k;
+        }
+        if (unit < 2 * SIZE) {
+            return unit - SIZE;
+        }
+        return ((unit - 2 * SIZE) % 3) * 3 + k % 3;
+    }
+}
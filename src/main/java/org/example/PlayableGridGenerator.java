@@ -1,9 +1,12 @@
 package org.example;
 
+import org.chocosolver.solver.Solver;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import static org.example.Sudoku.print2Dgrid;
 
@@ -11,12 +14,43 @@ import static org.example.Sudoku.print2Dgrid;
 public class PlayableGridGenerator{
     private Sudoku solver;
 
+    private PortfolioSolver portfolio;
+    private final Random random = new Random();
+    private MinimalGridReducer reducer;
+    private int removalBatch = DEFAULT_REMOVAL_BATCH;
+    private long uniquenessChecks = 0;
+
     public PlayableGridGenerator(Sudoku solver) {
         this.solver = solver;
     }
 
+    /** Makes the next removals only depend on the given seed */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /** Makes the uniqueness checks count the solutions with several workers in parallel */
+    public void setPortfolio(PortfolioSolver portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    /** Makes processGrid remove the numbers by batches, starting with batches of the given size (1 removes them one
+     * by one). The grids made are the same, with fewer uniqueness checks */
+    public void setRemovalBatch(int removalBatch) {
+        this.removalBatch = removalBatch;
+    }
+
+    /** @return the amount of uniqueness checks made so far */
+    public long getUniquenessChecks() {
+        return uniquenessChecks;
+    }
+
     public static final int SIZE = 9;
     public static final int EMPTY = 0;
+    /** The minimum amount of numbers removed by processGrid */
+    public static final int MIN_REMOVED = 55;
+    /** The size of the first batch of numbers removed together by processGrid */
+    public static final int DEFAULT_REMOVAL_BATCH = 16;
 
     /** Transforms a 1D full sudoku grid to 2D*/
     public static int[][] toTwoDimensionalArray(int[] grid) {
@@ -29,15 +63,45 @@ public class PlayableGridGenerator{
         return twoD;
     }
 
-    /** Takes a full sudoku grid and removes cases one by one until a model finds two solutions, doens't stop until
-     * at least 55 cases have been removed.
+    /** Reads a grid written as 81 digits, empty cells being 0 or . */
+    public static int[][] fromString(String grid) {
+        if (grid.length() != SIZE * SIZE) {
+            throw new IllegalArgumentException("The grid must be written with " + SIZE * SIZE + " characters");
+        }
+        int[] oneD = new int[SIZE * SIZE];
+        for (int i = 0; i < oneD.length; i++) {
+            char c = grid.charAt(i);
+            oneD[i] = c == '.' ? EMPTY : c - '0';
+            if (oneD[i] < 0 || oneD[i] > SIZE) {
+                throw new IllegalArgumentException("Invalid character in the grid: " + c);
+            }
+        }
+        return toTwoDimensionalArray(oneD);
+    }
+
+    /** Writes a grid as 81 digits, empty cells being 0 */
+    public static String toString(int[][] grid) {
+        StringBuilder st = new StringBuilder(SIZE * SIZE);
+        for (int[] row : grid) {
+            for (int value : row) {
+                st.append(value);
+            }
+        }
+        return st.toString();
+    }
+
+    /** Takes a full sudoku grid and removes cases in a random order, putting back the ones whose removal lets a model
+     * find two solutions, until at least MIN_REMOVED cases have been removed.
+     * The cases are removed by batches checked at once, DEFAULT_REMOVAL_BATCH at first: a batch that fails is split
+     * in halves (see removeByBatches), which makes the same grid as removing them one by one with fewer checks.
+     * setRemovalBatch changes the size of the first batch, 1 removes the cases one by one.
      * 55 seems to be the best in between speed of generation and difficulty of the grids generated
      * Not specifying a minimum will end up in the generation of too easy grids */
 
     public int[][] processGrid(int[][] grid){
         // This function will remove numbers from the grid until it finds a grid with two solutions
-        // The removal is made following this logic: the number to remove is chosen randomly among the non-empty cells
-        // If the solver finds more than one solution, the number is put back in the grid
+        // The removal is made following this logic: the numbers are taken in a random order among the non-empty cells
+        // If the solver finds more than one solution, the numbers are put back in the grid
         // The process stops when the minimum amount of numbers to remove is reached
 
         int n = 0; // The amount of numbers removed
@@ -56,35 +120,128 @@ public class PlayableGridGenerator{
         }
 
         // we shuffle the list
-        Collections.shuffle(nonEmptyCells);
+        Collections.shuffle(nonEmptyCells, random);
+
+        if (removalBatch > 1) {
+            removeByBatches(grid, nonEmptyCells);
+            return grid;
+        }
 
         // iterate over the list
         for (int[] cell : nonEmptyCells) {
-            int i = cell[0];
-            int j = cell[1];
+            // If the solver finds more than one solution, the number is put back in the grid
+            if (tryRemoval(grid, Collections.singletonList(cell))) {
+                n++;
+                if(n >= MIN_REMOVED){
+                    // We only stop when we have reached the minimum amount of numbers to remove
+                    break;
+                }
+            }
+        }
+
+        return grid;
+    }
+
+    /** Removes the numbers of the cells in the same order as the loop of processGrid, but by batches checked at once.
+     * A grid with several solutions keeps them whatever other numbers are removed, so a batch that passes the check
+     * would have passed it number by number, and a batch that fails is split in two halves tried one after the
+     * other: the grid made is the one the one by one loop makes, with fewer checks.
+     * The batches double after a success and halve after a failure, to follow how often the numbers can be removed
+     * (almost always at first, rarely at the end) */
+    private void removeByBatches(int[][] grid, List<int[]> cells) {
+        int n = 0;
+        int batch = removalBatch;
+        int next = 0;
+        while (next < cells.size() && n < MIN_REMOVED) {
+            // The batch never goes past the minimum, the loop one by one would have stopped there
+            int size = Math.min(Math.min(batch, cells.size() - next), MIN_REMOVED - n);
+            int removed = removeBisecting(grid, cells.subList(next, next + size), false);
+            n += removed;
+            next += size;
+            batch = removed == size ? batch * 2 : Math.max(1, batch / 2);
+        }
+    }
+
+    /** @param failing whether the removal of all the cells is already known to leave several solutions
+     * @return the amount of numbers removed */
+    private int removeBisecting(int[][] grid, List<int[]> cells, boolean failing) {
+        if (!failing && tryRemoval(grid, cells)) {
+            return cells.size();
+        }
+        if (cells.size() == 1) {
+            return 0;
+        }
+        List<int[]> first = cells.subList(0, cells.size() / 2);
+        List<int[]> second = cells.subList(cells.size() / 2, cells.size());
+        int removed = removeBisecting(grid, first, false);
+        // With the whole first half removed, the grid is the one of the failed check: the second half fails as well
+        return removed + removeBisecting(grid, second, removed == first.size());
+    }
 
-            // Remove the number from the grid
-            int oldValue = grid[i][j];
-            grid[i][j] = 0;
+    /** Removes the numbers of the cells, and puts them back if the grid no longer has a single solution
+     * @return whether the numbers have been removed */
+    private boolean tryRemoval(int[][] grid, List<int[]> cells) {
+        SolverEvents.RemovalAttempt event = new SolverEvents.RemovalAttempt();
+        event.begin();
+
+        int[] oldValues = new int[cells.size()];
+        for (int k = 0; k < cells.size(); k++) {
+            int[] cell = cells.get(k);
+            oldValues[k] = grid[cell[0]][cell[1]];
+            grid[cell[0]][cell[1]] = EMPTY;
+        }
 
+        // Extract how many solutions the solver found, there is no need to look further than a second one
+        int solutions;
+        long nodes;
+        long fails;
+        if (portfolio != null) {
+            solutions = portfolio.countSolutions(grid, 2);
+            nodes = portfolio.getLastNodes();
+            fails = portfolio.getLastFails();
+        } else {
             solver.targetGrid = grid;
             solver.buildModel();
+            solver.configureUniquenessSearch();
+            Solver search = solver.getModel().getSolver();
+            solutions = 0;
+            while (solutions < 2 && search.solve()) {
+                solutions++;
+            }
+            nodes = search.getMeasures().getNodeCount();
+            fails = search.getMeasures().getFailCount();
+        }
+        uniquenessChecks++;
+
+        if (event.shouldCommit()) {
+            event.gridId = solver.gridId;
+            event.row = cells.get(0)[0];
+            event.col = cells.get(0)[1];
+            event.cells = cells.size();
+            event.solutions = solutions;
+            event.removed = solutions <= 1;
+            event.nodes = nodes;
+            event.fails = fails;
+            event.commit();
+        }
 
-            // Extract how many solutions the solver found
-            int solutions = solver.getModel().getSolver().findAllSolutions().size();
-
-            if(solutions > 1) {
-                // If the solver found more than one solution, re-put the number in the grid
-                grid[i][j] = oldValue;
-            } else {
-                n++;
-                if(n >= 55){
-                    // We only stop when we have reached the minimum amount of numbers to remove
-                    break;
-                }
+        if (solutions > 1) {
+            for (int k = 0; k < cells.size(); k++) {
+                grid[cells.get(k)[0]][cells.get(k)[1]] = oldValues[k];
             }
+            return false;
         }
+        return true;
+    }
 
+    /** Keeps removing numbers from a grid produced by processGrid until none can be removed without losing the
+     * uniqueness of the solution, the grid is modified in place
+     * @param solution the full grid the playable grid was made from */
+    public int[][] makeMinimal(int[][] grid, int[][] solution) {
+        if (reducer == null) {
+            reducer = new MinimalGridReducer();
+        }
+        reducer.minimize(grid, solution, random);
         return grid;
     }
 
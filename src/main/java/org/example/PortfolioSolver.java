@@ -0,0 +1,233 @@
+package org.example;
+
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.ParallelPortfolio;
+import org.chocosolver.solver.Solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.example.PlayableGridGenerator.EMPTY;
+import static org.example.PlayableGridGenerator.SIZE;
+
+/** This class solves a single grid with several differently configured solver workers running in parallel */
+public class PortfolioSolver {
+    /** Strategies of the workers after the first one, which keeps the strategy configured on the command line */
+    private static final SearchStrategy[] DIVERSIFICATION = {
+            SearchStrategy.DOM_WDEG,
+            SearchStrategy.CONFLICT_HISTORY,
+            SearchStrategy.ACTIVITY,
+            SearchStrategy.RANDOM,
+            SearchStrategy.MIN_DOM_UB,
+            SearchStrategy.DOM_WDEG_REF
+    };
+
+    private final Sudoku config;
+    private final int workers;
+    private final ExecutorService executor;
+    // Search effort of the last count, summed over its tasks
+    private final AtomicLong lastNodes = new AtomicLong();
+    private final AtomicLong lastFails = new AtomicLong();
+    private final AtomicReference<int[][]> lastSolution = new AtomicReference<>();
+
+    /** @param config the sudoku whose options (strategies, seed, restarts) the workers are configured from */
+    public PortfolioSolver(Sudoku config, int workers) {
+        this.config = config;
+        this.workers = Math.max(1, workers);
+        this.executor = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread thread = new Thread(r, "sudoku-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Solves the grid with the model of the given level, the first worker to find a solution stops the others.
+     * @return the solved grid, or null if the grid has no solution */
+    public int[][] solve(int[][] grid, ModelLevel level) {
+        if (workers == 1) {
+            Sudoku worker = worker(grid, level, 0);
+            worker.configureSearch();
+            return worker.getModel().getSolver().solve() ? solutionOf(worker) : null;
+        }
+
+        ParallelPortfolio portfolio = new ParallelPortfolio(false);
+        Map<Model, Sudoku> workerOf = new HashMap<>();
+        for (int i = 0; i < workers; i++) {
+            Sudoku worker = worker(grid, level, i);
+            worker.configureSearch();
+            portfolio.addModel(worker.getModel());
+            workerOf.put(worker.getModel(), worker);
+        }
+
+        if (!portfolio.solve()) {
+            return null;
+        }
+        return solutionOf(workerOf.get(portfolio.getBestModel()));
+    }
+
+    /** Counts the solutions of the grid, stopping as soon as the limit is reached. The grid is split into sub-grids
+     * on the values of their most constrained empty cell until there are at least as many sub-grids as workers, each
+     * sub-grid being counted by its own task.
+     * @return the amount of solutions, capped to the limit
+     * @throws IllegalStateException if the thread is interrupted, a partial count could take a grid for unique */
+    public int countSolutions(int[][] grid, int limit) {
+        AtomicInteger total = new AtomicInteger();
+        lastNodes.set(0);
+        lastFails.set(0);
+        lastSolution.set(null);
+        List<Future<?>> tasks = new ArrayList<>();
+        int index = 0;
+        for (int[][] subGrid : split(grid)) {
+            int workerIndex = index++;
+            tasks.add(executor.submit(() -> {
+                Sudoku worker = worker(subGrid, ModelLevel.MEDIUM, workerIndex);
+                worker.configureUniquenessSearch();
+                Solver solver = worker.getModel().getSolver();
+                solver.addStopCriterion(() -> total.get() >= limit);
+                while (total.get() < limit && solver.solve()) {
+                    lastSolution.compareAndSet(null, solutionOf(worker));
+                    total.incrementAndGet();
+                }
+                lastNodes.addAndGet(solver.getMeasures().getNodeCount());
+                lastFails.addAndGet(solver.getMeasures().getFailCount());
+            }));
+        }
+
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            tasks.forEach(task -> task.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting the solutions", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A solver worker failed", e.getCause());
+        }
+        return Math.min(limit, total.get());
+    }
+
+    /** @return the nodes explored by all the tasks of the last count */
+    public long getLastNodes() {
+        return lastNodes.get();
+    }
+
+    /** @return the fails of all the tasks of the last count */
+    public long getLastFails() {
+        return lastFails.get();
+    }
+
+    /** @return a solution found by the last count, null if it found none */
+    public int[][] getLastSolution() {
+        return lastSolution.get();
+    }
+
+    /** Splits the grid level by level, every sub-grid getting one of the candidates of its most constrained empty
+     * cell, until there are at least as many sub-grids as workers or none can be split further
+     * @return sub-grids whose solutions are exactly the ones of the grid */
+    private List<int[][]> split(int[][] grid) {
+        List<int[][]> subGrids = new ArrayList<>();
+        subGrids.add(grid);
+        boolean splittable = true;
+        while (subGrids.size() < workers && splittable) {
+            splittable = false;
+            List<int[][]> next = new ArrayList<>();
+            for (int[][] subGrid : subGrids) {
+                int[] cell = mostConstrainedEmptyCell(subGrid);
+                if (cell == null) {
+                    // The sub-grid is either full or has a cell without any candidate, its task counts it at once
+                    next.add(subGrid);
+                    continue;
+                }
+                for (int value : candidates(subGrid, cell[0], cell[1])) {
+                    int[][] child = copy(subGrid);
+                    child[cell[0]][cell[1]] = value;
+                    next.add(child);
+                }
+                splittable = true;
+            }
+            subGrids = next;
+        }
+        return subGrids;
+    }
+
+    /** Creates a worker holding the model of the grid, the i-th worker gets its own seed and strategy */
+    private Sudoku worker(int[][] grid, ModelLevel level, int i) {
+        Sudoku worker = new Sudoku();
+        worker.targetGrid = grid;
+        worker.seed = config.seed + i;
+        worker.restarts = config.restarts;
+        worker.setUniquenessSearch(config.getUniquenessSearch());
+        worker.setSearch(level, i == 0 ? config.getSearch(level) : DIVERSIFICATION[(i - 1) % DIVERSIFICATION.length]);
+        worker.setModelLevel(level);
+        worker.buildModel();
+        return worker;
+    }
+
+    private static int[][] solutionOf(Sudoku worker) {
+        int[][] solution = new int[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                solution[i][j] = worker.rows[i][j].getValue();
+            }
+        }
+        return solution;
+    }
+
+    /** @return the empty cell with the fewest candidates, null if the grid is full or a cell has no candidate */
+    private static int[] mostConstrainedEmptyCell(int[][] grid) {
+        int[] best = null;
+        int bestCount = SIZE + 1;
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (grid[i][j] == EMPTY) {
+                    int count = candidates(grid, i, j).size();
+                    if (count == 0) {
+                        return null;
+                    }
+                    if (count < bestCount) {
+                        bestCount = count;
+                        best = new int[]{i, j};
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /** @return the values that appear neither in the row, the column nor the box of the cell */
+    private static List<Integer> candidates(int[][] grid, int row, int col) {
+        boolean[] used = new boolean[SIZE + 1];
+        int boxRow = row - row % 3;
+        int boxCol = col - col % 3;
+        for (int k = 0; k < SIZE; k++) {
+            used[grid[row][k]] = true;
+            used[grid[k][col]] = true;
+            used[grid[boxRow + k / 3][boxCol + k % 3]] = true;
+        }
+        List<Integer> values = new ArrayList<>();
+        for (int v = 1; v <= SIZE; v++) {
+            if (!used[v]) {
+                values.add(v);
+            }
+        }
+        return values;
+    }
+
+    private static int[][] copy(int[][] grid) {
+        int[][] copy = new int[grid.length][];
+        for (int i = 0; i < grid.length; i++) {
+            copy[i] = grid[i].clone();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,86 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.example.PlayableGridGenerator.SIZE;
+
+/** This class turns a grid into equivalent grids: relabelling the digits, permuting the rows inside a band or the
+ * columns inside a stack, swapping bands or stacks and transposing all keep a grid valid, unique and as hard to
+ * solve by reasoning. The variants can then inherit the difficulty of the original grid instead of being rated.
+ * The rating also depends on the order the search tries variables and values in, which the transformations change,
+ * so the cascade does not always rate a variant like its original (about a third of them on generated grids, a grid
+ * solved by a lucky search being rated easier than it is): see -verifyMultiply */
+public class PuzzleMultiplier {
+    private final Random random;
+
+    public PuzzleMultiplier(Random random) {
+        this.random = random;
+    }
+
+    /** @return up to count variants of the grid, all different from each other and from the grid */
+    public List<int[][]> variants(int[][] grid, int count) {
+        Set<String> seen = new HashSet<>();
+        seen.add(PlayableGridGenerator.toString(grid));
+        List<int[][]> variants = new ArrayList<>();
+        // Symmetric grids have fewer distinct variants, the attempts are bounded not to loop forever on them
+        for (int attempt = 0; attempt < count * 10 && variants.size() < count; attempt++) {
+            int[][] variant = transform(grid);
+            if (seen.add(PlayableGridGenerator.toString(variant))) {
+                variants.add(variant);
+            }
+        }
+        return variants;
+    }
+
+    /** Applies a random combination of all the transformations */
+    public int[][] transform(int[][] grid) {
+        int[] digits = permutation(SIZE + 1, 1);
+        int[] rows = linePermutation();
+        int[] cols = linePermutation();
+        boolean transpose = random.nextBoolean();
+
+        int[][] variant = new int[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                int value = transpose ? grid[cols[j]][rows[i]] : grid[rows[i]][cols[j]];
+                variant[i][j] = digits[value];
+            }
+        }
+        return variant;
+    }
+
+    /** @return a permutation of the lines that moves whole bands (or stacks) and lines inside them */
+    private int[] linePermutation() {
+        int[] bands = permutation(3, 0);
+        int[] lines = new int[SIZE];
+        for (int band = 0; band < 3; band++) {
+            int[] inside = permutation(3, 0);
+            for (int k = 0; k < 3; k++) {
+                lines[band * 3 + k] = bands[band] * 3 + inside[k];
+            }
+        }
+        return lines;
+    }
+
+    /** @return a permutation of 0 to size - 1 that keeps the values below from in place (0 stays the empty value) */
+    private int[] permutation(int size, int from) {
+        List<Integer> values = new ArrayList<>();
+        for (int v = from; v < size; v++) {
+            values.add(v);
+        }
+        Collections.shuffle(values, random);
+        int[] permutation = new int[size];
+        for (int v = 0; v < from; v++) {
+            permutation[v] = v;
+        }
+        for (int v = from; v < size; v++) {
+            permutation[v] = values.get(v - from);
+        }
+        return permutation;
+    }
+}
@@ -0,0 +1,72 @@
+package org.example;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/** The times of the rating of a run: the time of each grid (the one of the solve that rated it), also split by
+ * difficulty, and the time of every model solve by level. It takes the same memory whatever the amount of grids */
+public class RatingTimes {
+    private final StreamingStats grids = new StreamingStats();
+    private final Map<GridDifficulty, StreamingStats> byDifficulty = new EnumMap<>(GridDifficulty.class);
+    private final Map<ModelLevel, StreamingStats> byLevel = new EnumMap<>(ModelLevel.class);
+
+    public RatingTimes() {
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            byDifficulty.put(difficulty, new StreamingStats());
+        }
+        for (ModelLevel level : ModelLevel.values()) {
+            byLevel.put(level, new StreamingStats());
+        }
+    }
+
+    public void addGrid(GridDifficulty difficulty, double time) {
+        grids.add(time);
+        byDifficulty.get(difficulty).add(time);
+    }
+
+    public void addSolve(ModelLevel level, double time) {
+        byLevel.get(level).add(time);
+    }
+
+    /** Adds the times of another run or thread to these ones */
+    public void merge(RatingTimes other) {
+        grids.merge(other.grids);
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            byDifficulty.get(difficulty).merge(other.byDifficulty.get(difficulty));
+        }
+        for (ModelLevel level : ModelLevel.values()) {
+            byLevel.get(level).merge(other.byLevel.get(level));
+        }
+    }
+
+    public StreamingStats getGrids() {
+        return grids;
+    }
+
+    public StreamingStats get(GridDifficulty difficulty) {
+        return byDifficulty.get(difficulty);
+    }
+
+    public StreamingStats get(ModelLevel level) {
+        return byLevel.get(level);
+    }
+
+    public void print() {
+        if (grids.getCount() == 0) {
+            return;
+        }
+        System.out.println("Average time taken: " + grids.getMean());
+        System.out.println("Max time taken: " + grids.getMax());
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            if (byDifficulty.get(difficulty).getCount() > 0) {
+                System.out.println("Time of the " + difficulty + " grids: " + byDifficulty.get(difficulty));
+            }
+        }
+        // The grids restored from a checkpoint only have the time of their grid, not the one of their solves
+        for (ModelLevel level : ModelLevel.values()) {
+            if (byLevel.get(level).getCount() > 0) {
+                System.out.println("Time of the " + level + " model solves: " + byLevel.get(level));
+            }
+        }
+    }
+}
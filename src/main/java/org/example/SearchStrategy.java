@@ -0,0 +1,56 @@
+package org.example;
+
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.variables.IntVar;
+
+import static org.chocosolver.solver.search.strategy.Search.*;
+
+/** The search strategies that can be plugged on the sudoku models, each one is selectable per model level on the
+ * command line (see the -search* options of {@link Sudoku}) */
+public enum SearchStrategy {
+    /** Lets choco pick its own default search */
+    DEFAULT,
+    /** Smallest domain first, lowest value first. This is the reference strategy the difficulties are rated with */
+    MIN_DOM_LB,
+    /** Smallest domain first, highest value first */
+    MIN_DOM_UB,
+    /** Domain over weighted degree, the weights being the number of failures of each constraint */
+    DOM_WDEG,
+    /** Domain over weighted degree with refined weights */
+    DOM_WDEG_REF,
+    /** Activity-based search */
+    ACTIVITY,
+    /** Conflict-history search */
+    CONFLICT_HISTORY,
+    /** Random variable and value, driven by the -seed option */
+    RANDOM;
+
+    /** Sets this strategy as the search of the solver over the given variables */
+    public void apply(Solver solver, IntVar[] vars, long seed) {
+        switch (this) {
+            case DEFAULT:
+                break;
+            case MIN_DOM_LB:
+                solver.setSearch(minDomLBSearch(vars));
+                break;
+            case MIN_DOM_UB:
+                solver.setSearch(minDomUBSearch(vars));
+                break;
+            case DOM_WDEG:
+                solver.setSearch(domOverWDegSearch(vars));
+                break;
+            case DOM_WDEG_REF:
+                solver.setSearch(domOverWDegRefSearch(vars));
+                break;
+            case ACTIVITY:
+                solver.setSearch(activityBasedSearch(vars));
+                break;
+            case CONFLICT_HISTORY:
+                solver.setSearch(conflictHistorySearch(vars));
+                break;
+            case RANDOM:
+                solver.setSearch(randomSearch(vars, seed));
+                break;
+        }
+    }
+}
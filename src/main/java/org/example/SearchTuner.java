@@ -0,0 +1,102 @@
+package org.example;
+
+import java.util.List;
+
+/** This class benchmarks the search strategies on a sample of grids and picks the fastest one, either for the
+ * uniqueness checks or for a rating level */
+public class SearchTuner {
+    private final Sudoku solver;
+
+    public SearchTuner(Sudoku solver) {
+        this.solver = solver;
+    }
+
+    /** Counts the solutions of each sample grid with every strategy and returns the fastest strategy. The first clue
+     * is removed from each grid beforehand so that the checks look like the ones made while removing numbers */
+    public SearchStrategy tuneUniqueness(List<int[][]> sample) {
+        SearchStrategy initial = solver.getUniquenessSearch();
+        SearchStrategy best = initial;
+        long bestTime = Long.MAX_VALUE;
+
+        // A first pass warms the JIT up so that the first strategy measured is not penalized
+        timeUniqueness(sample);
+        for (SearchStrategy strategy : SearchStrategy.values()) {
+            solver.setUniquenessSearch(strategy);
+            long time = timeUniqueness(sample);
+            if (time < bestTime) {
+                bestTime = time;
+                best = strategy;
+            }
+        }
+
+        solver.setUniquenessSearch(initial);
+        System.out.println("Uniqueness checks: " + best + " (" + bestTime / 1_000_000 + " ms on the sample)");
+        return best;
+    }
+
+    /** Solves each sample grid with the model of the given level with every strategy and returns the fastest */
+    public SearchStrategy tuneLevel(ModelLevel level, List<int[][]> sample) {
+        SearchStrategy initial = solver.getSearch(level);
+        SearchStrategy best = initial;
+        long bestTime = Long.MAX_VALUE;
+
+        timeLevel(level, sample);
+        for (SearchStrategy strategy : SearchStrategy.values()) {
+            solver.setSearch(level, strategy);
+            long time = timeLevel(level, sample);
+            if (time < bestTime) {
+                bestTime = time;
+                best = strategy;
+            }
+        }
+
+        solver.setSearch(level, initial);
+        System.out.println(level + " model: " + best + " (" + bestTime / 1_000_000 + " ms on the sample)");
+        return best;
+    }
+
+    private long timeUniqueness(List<int[][]> sample) {
+        long total = 0;
+        for (int[][] grid : sample) {
+            int[][] checked = copyWithoutFirstClue(grid);
+            solver.targetGrid = checked;
+            solver.setModelLevel(ModelLevel.MEDIUM);
+            solver.buildModel();
+            solver.configureUniquenessSearch();
+            long start = System.nanoTime();
+            solver.getModel().getSolver().findAllSolutions();
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+
+    private long timeLevel(ModelLevel level, List<int[][]> sample) {
+        long total = 0;
+        for (int[][] grid : sample) {
+            solver.targetGrid = grid;
+            solver.setModelLevel(level);
+            solver.buildModel();
+            solver.configureSearch();
+            long start = System.nanoTime();
+            solver.solve();
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+
+    private static int[][] copyWithoutFirstClue(int[][] grid) {
+        int[][] copy = new int[grid.length][];
+        for (int i = 0; i < grid.length; i++) {
+            copy[i] = grid[i].clone();
+        }
+        for (int[] row : copy) {
+            for (int j = 0; j < row.length; j++) {
+                if (row[j] != 0) {
+                    row[j] = 0;
+                    return copy;
+                }
+            }
+        }
+        return copy;
+    }
+}
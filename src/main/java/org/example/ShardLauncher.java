@@ -0,0 +1,116 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** This class splits a run into shards, runs each shard as a local process writing its own corpus file, then merges
+ * the shard files into a single corpus. Shards can just as well be started by hand on different machines with the
+ * -shards, -shard and -out options and merged afterwards with {@link Corpus#main} */
+public class ShardLauncher {
+    /** Options set by the launcher itself, they are not forwarded as given to the shards */
+    private static final List<String> SHARD_OPTIONS = Arrays.asList("-spawnShards", "-shards", "-shard", "-out");
+    /** Options naming a file a process writes, every shard gets its own file: the given one suffixed with the shard.
+     * With -dedupFile the shards do not drop each other's grids, the merge removes these duplicates */
+    private static final List<String> PER_SHARD_FILES = Arrays.asList("-checkpoint", "-dedupFile", "-jfr");
+
+    private final int shards;
+    private final File output;
+
+    public ShardLauncher(int shards, File output) {
+        this.shards = shards;
+        this.output = output;
+    }
+
+    /** Runs the shards with the same options as this run and waits for all of them before merging */
+    public void launch(String[] args) throws IOException {
+        if (output == null) {
+            throw new IOException("-spawnShards needs an -out file to merge the shards into");
+        }
+
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        List<File> shardFiles = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            File shardFile = new File(output.getPath() + ".shard" + shard);
+            shardFiles.add(shardFile);
+            // A file left by an earlier run would be merged even if this shard fails before writing its own
+            Files.deleteIfExists(shardFile.toPath());
+
+            List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", classpath(), Main.class.getName()));
+            command.addAll(forwardedArgs(args, shard));
+            command.addAll(Arrays.asList("-shards", String.valueOf(shards), "-shard", String.valueOf(shard),
+                    "-out", shardFile.getPath()));
+
+            processes.add(new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(new File(shardFile.getPath() + ".log"))
+                    .start());
+        }
+        System.out.println("Started " + shards + " shards, logs in " + output.getPath() + ".shard*.log");
+
+        for (int shard = 0; shard < shards; shard++) {
+            try {
+                int exitCode = processes.get(shard).waitFor();
+                if (exitCode != 0 || !shardFiles.get(shard).exists()) {
+                    throw new IOException("Shard " + shard + " failed with exit code " + exitCode);
+                }
+            } catch (InterruptedException e) {
+                processes.forEach(Process::destroy);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the shards", e);
+            }
+        }
+
+        Corpus merged = new Corpus();
+        for (File shardFile : shardFiles) {
+            merged.addAll(Corpus.read(shardFile.toPath()));
+        }
+        merged.write(output.toPath());
+        System.out.println("Merged " + merged.size() + " distinct grids into " + output.getPath());
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            System.out.println(difficulty + " GRIDS: " + merged.get(difficulty).size());
+        }
+    }
+
+    /** @return the options of this run to give to a shard */
+    private static List<String> forwardedArgs(String[] args, int shard) {
+        List<String> forwarded = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (SHARD_OPTIONS.contains(args[i])) {
+                i++; // skips the value of the option as well
+            } else if (PER_SHARD_FILES.contains(args[i]) && i + 1 < args.length) {
+                forwarded.add(args[i]);
+                forwarded.add(args[++i] + ".shard" + shard);
+            } else {
+                forwarded.add(args[i]);
+            }
+        }
+        return forwarded;
+    }
+
+    /** The classpath of this run, taken from the class loader when launched through maven's exec:java */
+    private static String classpath() throws IOException {
+        ClassLoader loader = ShardLauncher.class.getClassLoader();
+        if (!(loader instanceof URLClassLoader)) {
+            return System.getProperty("java.class.path");
+        }
+        List<String> paths = new ArrayList<>();
+        try {
+            for (URL url : ((URLClassLoader) loader).getURLs()) {
+                paths.add(Paths.get(url.toURI()).toString());
+            }
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid classpath entry", e);
+        }
+        return String.join(File.pathSeparator, paths);
+    }
+}
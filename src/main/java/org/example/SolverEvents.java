@@ -0,0 +1,112 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/** Java Flight Recorder events of the generation and rating phases, every event carries the id of its grid (its
+ * index in the run) and its duration.
+ * The events are disabled by default, which makes them close to free: they are enabled by the -jfr option, or by a
+ * recording started with -XX:StartFlightRecording and settings such as "org.example.Solve#enabled=true" */
+public final class SolverEvents {
+    private SolverEvents() {
+    }
+
+    @Name("org.example.GridGeneration")
+    @Label("Full Grid Generation")
+    @Category("Sudoku")
+    @Enabled(false)
+    public static class GridGeneration extends Event {
+        @Label("Grid Id")
+        long gridId;
+    }
+
+    @Name("org.example.RemovalAttempt")
+    @Label("Removal Attempt")
+    @Description("Removal of numbers from a full grid and the uniqueness check that follows")
+    @Category("Sudoku")
+    @Enabled(false)
+    public static class RemovalAttempt extends Event {
+        @Label("Grid Id")
+        long gridId;
+        @Label("Row")
+        int row;
+        @Label("Column")
+        int col;
+        @Label("Cells")
+        @Description("Amount of numbers removed together, the row and column being the ones of the first")
+        int cells;
+        @Label("Solutions")
+        int solutions;
+        @Label("Removed")
+        boolean removed;
+        @Label("Nodes")
+        long nodes;
+        @Label("Fails")
+        long fails;
+    }
+
+    @Name("org.example.ModelBuild")
+    @Label("Model Build")
+    @Category("Sudoku")
+    @Enabled(false)
+    public static class ModelBuild extends Event {
+        @Label("Grid Id")
+        long gridId;
+        @Label("Level")
+        String level;
+    }
+
+    @Name("org.example.Solve")
+    @Label("Solve")
+    @Category("Sudoku")
+    @Enabled(false)
+    public static class Solve extends Event {
+        @Label("Grid Id")
+        long gridId;
+        @Label("Level")
+        String level;
+        @Label("Nodes")
+        long nodes;
+        @Label("Fails")
+        long fails;
+        @Label("Backtracks")
+        long backtracks;
+    }
+
+    @Name("org.example.Rating")
+    @Label("Rating")
+    @Description("Rating of a grid through the model cascade")
+    @Category("Sudoku")
+    @Enabled(false)
+    public static class Rating extends Event {
+        @Label("Grid Id")
+        long gridId;
+        @Label("Level")
+        String level;
+        @Label("Difficulty")
+        String difficulty;
+    }
+
+    /** Starts a recording of all the events, written to the file when the JVM exits */
+    public static Recording startRecording(Path file) throws IOException {
+        Recording recording = new Recording();
+        recording.setName("sudoku");
+        recording.enable(GridGeneration.class);
+        recording.enable(RemovalAttempt.class);
+        recording.enable(ModelBuild.class);
+        recording.enable(Solve.class);
+        recording.enable(Rating.class);
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);
+        recording.start();
+        return recording;
+    }
+}
@@ -0,0 +1,116 @@
+package org.example;
+
+import java.util.Locale;
+
+/** Statistics of a stream of positive values (times in seconds) in constant memory: count, mean, variance, min, max,
+ * and the quantiles from a histogram of logarithmic buckets, exact to 1% of the value.
+ * Adding a value allocates nothing. The instances are not thread-safe, every thread keeps its own and they are
+ * merged at the end */
+public class StreamingStats {
+    /** Relative accuracy of the quantiles */
+    private static final double ACCURACY = 0.01;
+    private static final double GAMMA = (1 + ACCURACY) / (1 - ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    /** Values under 1 µs or over 10^4 s go to the first or the last bucket */
+    private static final double LOWEST = 1e-6;
+    private static final int OFFSET = bucketIndex(LOWEST);
+    private static final int BUCKETS = bucketIndex(1e4) - OFFSET + 1;
+
+    private long count = 0;
+    private double mean = 0;
+    // Sum of the squared differences to the mean (Welford)
+    private double m2 = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long zeros = 0;
+    private final long[] buckets = new long[BUCKETS];
+
+    private static int bucketIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    }
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value <= 0) {
+            zeros++;
+        } else {
+            int bucket = bucketIndex(Math.max(value, LOWEST)) - OFFSET;
+            buckets[Math.min(bucket, BUCKETS - 1)]++;
+        }
+    }
+
+    /** Adds the values of the other statistics to these ones */
+    public void merge(StreamingStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        mean += delta * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        zeros += other.zeros;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] += other.buckets[i];
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : 0;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /** @param q from 0 to 1
+     * @return the q-quantile of the values, within 1% (0 if there is none) */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * count);
+        long seen = zeros;
+        if (seen >= rank) {
+            return 0;
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                // The middle of the bucket, bounded by the extreme values that are known exactly
+                double value = 2 * Math.pow(GAMMA, i + OFFSET) / (GAMMA + 1);
+                return Math.min(max, Math.max(min, value));
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) {
+            return "no value";
+        }
+        return String.format(Locale.ROOT,
+                "%d values, mean %.6f, std dev %.6f, min %.6f, median %.6f, p90 %.6f, p99 %.6f, max %.6f",
+                count, mean, Math.sqrt(getVariance()), min, quantile(0.5), quantile(0.9), quantile(0.99), max);
+    }
+}
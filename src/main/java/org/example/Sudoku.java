@@ -9,14 +9,22 @@ package org.example;
  * See LICENSE file in the project root for full license information.
  */
 
+import org.chocosolver.parser.SetUpException;
 import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
 import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.search.limits.FailCounter;
 import org.chocosolver.solver.variables.IntVar;
 import org.kohsuke.args4j.Option;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
 
-import static org.chocosolver.solver.search.strategy.Search.minDomLBSearch;
+import static java.lang.Runtime.getRuntime;
+
 import static org.chocosolver.util.tools.ArrayUtils.append;
 
 /**
@@ -35,28 +43,145 @@ public class Sudoku extends AbstractProblem {
     private static final int N = 1000;
 
     // Bucket containing the grids that have been assessed and their difficulty
-    public static Map<GridDifficulty, ArrayList<int[][]>> gridsAssessedBucket;
+    public static Map<GridDifficulty, ArrayList<int[][]>> gridsAssessedBucket = new HashMap<>();
+    // Variants whose difficulty is inherited and not rated: they go to the corpus, not to the bucket
+    private final Map<GridDifficulty, Long> inheritedVariants = new EnumMap<>(GridDifficulty.class);
     IntVar[][] rows, cols, carres;
 
     /** The current grid to solve */
     public int[][] targetGrid;
     ModelLevel modelLevel;
+    /** Index in the run of the current grid, used to trace the events of a grid */
+    long gridId = -1;
 
     // ----------------------- Solving data ------------------------------
 
-    private List<Float> timeTaken = new ArrayList<>();
+    // Created on the first rating: most Sudoku instances (the portfolio workers, the play sessions) only hold a model
+    private RatingTimes times;
     private float maxTime = 0;
+    private float lastTime = 0;
 
-    public Sudoku(){
-        super();
-        gridsAssessedBucket = new HashMap<>();
+    private LevelPredictor predictor;
+    private long skippedSolves = 0;
+    private long predictedGrids = 0;
+    private long mispredictions = 0;
+
+    // ----------------------- Search options ------------------------------
+
+    /** The strategy the difficulties are rated with, any other strategy on a rating level changes the classification */
+    public static final SearchStrategy RATING_SEARCH = SearchStrategy.MIN_DOM_LB;
+
+    @Option(name = "-searchEasy", usage = "Search strategy of the easy model.")
+    SearchStrategy easySearch = RATING_SEARCH;
+
+    @Option(name = "-searchMedium", usage = "Search strategy of the medium model.")
+    SearchStrategy mediumSearch = RATING_SEARCH;
+
+    @Option(name = "-searchHard", usage = "Search strategy of the hard model.")
+    SearchStrategy hardSearch = RATING_SEARCH;
+
+    @Option(name = "-searchUnique", usage = "Search strategy of the uniqueness checks made while removing numbers.")
+    SearchStrategy uniqueSearch = SearchStrategy.DEFAULT;
+
+    @Option(name = "-restarts", usage = "Luby restarts with nogood recording on the rating solves.")
+    boolean restarts = false;
+
+    @Option(name = "-autoTune", usage = "Benchmarks the search strategies on a sample of the grids and keeps the fastest.")
+    boolean autoTune = false;
+
+    @Option(name = "-tuneSample", usage = "Amount of grids the auto-tune benchmarks on.")
+    int tuneSample = 20;
+
+    @Option(name = "-portfolio", usage = "Amount of solver workers solving a single grid in parallel (1 disables it).")
+    int portfolioWorkers = 1;
+
+    @Option(name = "-solveGrid", usage = "Solves the given grid (81 digits, 0 or . for empty cells) and exits.")
+    String gridToSolve = null;
+
+    @Option(name = "-grids", usage = "Amount of grids generated by the run (all shards together).")
+    int gridCount = N;
+
+    @Option(name = "-shards", usage = "Amount of shards the run is split into.")
+    int shards = 1;
+
+    @Option(name = "-shard", usage = "Index of the shard generated by this process, from 0 to shards - 1.")
+    int shard = 0;
+
+    @Option(name = "-out", usage = "Corpus file the rated grids are written to (no interactive part then).")
+    File corpusFile = null;
+
+    @Option(name = "-spawnShards", usage = "Runs that many shards as local processes and merges them into -out.")
+    int spawnShards = 0;
+
+    @Option(name = "-checkpoint", usage = "Append-only log of the rated grids, to resume the run if it is killed.")
+    File checkpointFile = null;
+
+    @Option(name = "-checkpointEvery", usage = "Amount of grids rated between two syncs of the checkpoint to the disk.")
+    int checkpointEvery = 50;
+
+    @Option(name = "-resume", usage = "Continues the run logged in the -checkpoint file. Only the grids, their difficulty and time are restored: the per-level solve times, the uniqueness checks and the prediction counts of the report start over. Refused with -autoTune -tuneRating.")
+    boolean resume = false;
+
+    @Option(name = "-overwriteCheckpoint", usage = "Starts a new log over an existing -checkpoint file instead of refusing to.")
+    boolean overwriteCheckpoint = false;
+
+    @Option(name = "-minimal", usage = "Thins every grid until no clue can be removed without losing uniqueness.")
+    boolean minimal = false;
+
+    @Option(name = "-ingest", usage = "Rates the grids of a file (one grid of 81 digits per line) instead of generating.")
+    File ingestFile = null;
+
+    @Option(name = "-batchLanes", usage = "Amount of grids the singles eliminations are run on at once when ingesting.")
+    int batchLanes = 64;
+
+    @Option(name = "-jfr", usage = "Records the flight recorder events of the phases of each grid to this file.")
+    File jfrFile = null;
+
+    @Option(name = "-predictLevel", usage = "Starts the rating cascade at the level predicted from the singles of the grid.")
+    boolean predictLevel = false;
+
+    @Option(name = "-verifyPrediction", usage = "Rates with the full cascade and counts the mispredictions of the level predictor.")
+    boolean verifyPrediction = false;
+
+    @Option(name = "-multiply", usage = "Adds that many transformed variants of every rated grid, with the same difficulty.")
+    int multiply = 0;
+
+    @Option(name = "-verifyMultiply", usage = "Share of the variants (0 to 1) rated again through the cascade to check them.")
+    double verifyMultiply = 0;
+
+    @Option(name = "-tuneRating", usage = "Lets the auto-tune change the rating strategies too (alters the difficulty classification).")
+    boolean tuneRating = false;
+
+    @Option(name = "-dedup", usage = "Drops the generated grids already produced before rating them (Bloom filter).")
+    boolean dedup = false;
+
+    @Option(name = "-dedupFalsePositive", usage = "Share of new grids the duplicate filter may drop by mistake.")
+    double dedupFalsePositive = 0.001;
+
+    @Option(name = "-dedupFile", usage = "Memory-mapped file of the duplicate filter, kept from one run to the next (change -seed between the runs).")
+    File dedupFile = null;
+
+    @Option(name = "-dedupExpected", usage = "Amount of grids the duplicate filter is sized for, all runs sharing a -dedupFile together (default: -grids).")
+    long dedupExpected = 0;
+
+    @Option(name = "-removalBatch", usage = "First batch size of the numbers removed together from a full grid before a single uniqueness check (1 removes them one by one).")
+    int removalBatch = PlayableGridGenerator.DEFAULT_REMOVAL_BATCH;
+
+    static {
         gridsAssessedBucket.put(GridDifficulty.EASY, new ArrayList<>());
         gridsAssessedBucket.put(GridDifficulty.MEDIUM, new ArrayList<>());
         gridsAssessedBucket.put(GridDifficulty.HARD, new ArrayList<>());
         gridsAssessedBucket.put(GridDifficulty.DIABOLIC, new ArrayList<>());
     }
 
+    // The bucket is shared, creating more Sudoku instances (e.g. the portfolio workers) must not empty it
+    public Sudoku(){
+        super();
+    }
+
     public void buildModel() {
+        SolverEvents.ModelBuild event = new SolverEvents.ModelBuild();
+        event.begin();
 
         switch (modelLevel) {
             case EASY:
@@ -70,6 +195,11 @@ public class Sudoku extends AbstractProblem {
                 break;
         }
 
+        if (event.shouldCommit()) {
+            event.gridId = gridId;
+            event.level = modelLevel.name();
+            event.commit();
+        }
     }
 
     /** The easy model consists of alldiff with arithmetic methods for checking inequalities  */
@@ -350,15 +480,38 @@ public class Sudoku extends AbstractProblem {
     }
 
 
+    /** Sets the search of the current model level. Restarts only trigger after a failure, so they never change
+     * whether a grid is solved without failing and are safe for the rating */
     @Override
     public void configureSearch() {
-        model.getSolver().setSearch(minDomLBSearch(append(rows)));
+        Solver solver = model.getSolver();
+        getSearch(modelLevel).apply(solver, append(rows), seed);
+        if (restarts) {
+            solver.setLubyRestart(50, new FailCounter(model, 50), 10000);
+            solver.setNoGoodRecordingFromRestarts();
+        }
+    }
+
+    /** Sets the search used when counting the solutions of the current model, the strategy does not change the
+     * count so any of them can be used. Restarts are not used here since they would enumerate solutions again */
+    public void configureUniquenessSearch() {
+        uniqueSearch.apply(model.getSolver(), append(rows), seed);
     }
 
     @Override
     public void solve() {
+        SolverEvents.Solve event = new SolverEvents.Solve();
+        event.begin();
         //model.getSolver().showStatistics();
         model.getSolver().solve();
+        if (event.shouldCommit()) {
+            event.gridId = gridId;
+            event.level = modelLevel.name();
+            event.nodes = model.getSolver().getMeasures().getNodeCount();
+            event.fails = model.getSolver().getMeasures().getFailCount();
+            event.backtracks = model.getSolver().getMeasures().getBackTrackCount();
+            event.commit();
+        }
         //printGrid(targetGrid);
         try {
             model.getSolver().propagate();
@@ -389,6 +542,117 @@ public class Sudoku extends AbstractProblem {
         this.modelLevel = level;
     }
 
+    public SearchStrategy getSearch(ModelLevel level) {
+        switch (level) {
+            case EASY:
+                return easySearch;
+            case MEDIUM:
+                return mediumSearch;
+            default:
+                return hardSearch;
+        }
+    }
+
+    public void setSearch(ModelLevel level, SearchStrategy strategy) {
+        switch (level) {
+            case EASY:
+                easySearch = strategy;
+                break;
+            case MEDIUM:
+                mediumSearch = strategy;
+                break;
+            case HARD:
+                hardSearch = strategy;
+                break;
+        }
+    }
+
+    public SearchStrategy getUniquenessSearch() {
+        return uniqueSearch;
+    }
+
+    public void setUniquenessSearch(SearchStrategy strategy) {
+        this.uniqueSearch = strategy;
+    }
+
+    /** Warns about every rating level that is not searched with the reference strategy */
+    private void flagClassificationChanges() {
+        for (ModelLevel level : ModelLevel.values()) {
+            if (getSearch(level) != RATING_SEARCH) {
+                System.out.println("WARNING: the " + level + " model is searched with " + getSearch(level)
+                        + " instead of " + RATING_SEARCH + ", the difficulty classification differs from a default run");
+            }
+        }
+    }
+
+    /** Adds to the corpus and the bucket variants of every rated grid, which inherit the difficulty of their original
+     * without being solved and are marked as inherited in the corpus. With -verifyMultiply, a share of the variants is
+     * rated through the cascade as a check: these variants get the difficulty they are rated */
+    private void multiply(Corpus corpus) {
+        Random verifyRandom = new Random(seed);
+        int added = 0;
+        int checked = 0;
+        int mismatches = 0;
+        // Only the rated grids are multiplied, not the variants added on the way
+        List<Corpus.Entry> originals = new ArrayList<>();
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            originals.addAll(corpus.get(difficulty));
+        }
+        for (Corpus.Entry entry : originals) {
+            // Each grid has its own random so that the variants do not depend on the shard
+            PuzzleMultiplier multiplier = new PuzzleMultiplier(new Random(~gridSeed(seed, entry.index)));
+            List<int[][]> variants = multiplier.variants(PlayableGridGenerator.fromString(entry.grid), multiply);
+            for (int v = 0; v < variants.size(); v++) {
+                int[][] variant = variants.get(v);
+                GridDifficulty difficulty = entry.difficulty;
+                boolean inherited = true;
+                if (verifyRandom.nextDouble() < verifyMultiply) {
+                    checked++;
+                    difficulty = cascade(variant, ModelLevel.EASY, false);
+                    inherited = false;
+                    if (difficulty != entry.difficulty) {
+                        mismatches++;
+                    }
+                }
+                // The variants are indexed after all the grids of the run
+                if (corpus.add((v + 1L) * gridCount + entry.index, difficulty, variant, inherited)) {
+                    if (inherited) {
+                        inheritedVariants.merge(difficulty, 1L, Long::sum);
+                    } else {
+                        gridsAssessedBucket.get(difficulty).add(variant);
+                    }
+                    added++;
+                }
+            }
+        }
+        System.out.println("Added " + added + " variants of the rated grids");
+        if (checked > 0) {
+            System.out.println("Variants rated again: " + checked + ", rated differently from their original: "
+                    + mismatches + " (" + 100.0 * mismatches / checked + "%), kept with the difficulty they are rated");
+        }
+    }
+
+    /** The variants with an inherited difficulty are not counted with the rated grids above, they are in the corpus */
+    private void printInheritedVariants() {
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            long count = inheritedVariants.getOrDefault(difficulty, 0L);
+            if (count > 0) {
+                System.out.println(difficulty + " VARIANTS WITH AN INHERITED DIFFICULTY: " + count);
+            }
+        }
+    }
+
+    private void printPredictionReport() {
+        if (verifyPrediction) {
+            // The full cascade runs anyway, the solves are the ones -predictLevel would skip
+            System.out.println("Level prediction: " + mispredictions + " mispredictions out of " + predictedGrids
+                    + " grids (" + (predictedGrids == 0 ? 0 : 100.0 * mispredictions / predictedGrids) + "%), "
+                    + skippedSolves + " model solves -predictLevel would skip");
+        } else if (predictLevel) {
+            System.out.println("Level prediction: " + skippedSolves + " model solves skipped");
+        }
+    }
+
     /** Prints the grid */
     public static void print2Dgrid(int[][] grid) {
         for (int i = 0; i < grid.length; i++) {
@@ -399,79 +663,467 @@ public class Sudoku extends AbstractProblem {
         }
     }
 
+    /** Solves a single grid with the hard model, in parallel when -portfolio is given, and tells if it is unique */
+    private static void solveSingleGrid(Sudoku sudoku, int[][] grid) {
+        PortfolioSolver portfolio = new PortfolioSolver(sudoku, sudoku.portfolioWorkers);
+        long start = System.nanoTime();
+        // Counting up to two solutions finds the solution as well, a single search answers both
+        int solutions = portfolio.countSolutions(grid, 2);
+        int[][] solution = portfolio.getLastSolution();
+        long time = System.nanoTime() - start;
+
+        if (solution == null) {
+            System.out.println("The grid has no solution");
+        } else {
+            print2Dgrid(solution);
+            System.out.println(solutions > 1 ? "The solution is not unique" : "The solution is unique");
+        }
+        System.out.println("Solved with " + sudoku.portfolioWorkers + " worker(s) in " + time / 1_000_000 + " ms");
+    }
+
+    /** @return the times of the ratings made by this instance */
+    public RatingTimes getTimes() {
+        if (times == null) {
+            times = new RatingTimes();
+        }
+        return times;
+    }
+
+    /** Rates a grid with the model cascade, starting at the level given by the predictor with -predictLevel */
+    public GridDifficulty rate(int[][] gridToSolve) {
+        SolverEvents.Rating event = new SolverEvents.Rating();
+        event.begin();
+
+        // The predictor lets the cascade skip the models that would almost certainly fail
+        ModelLevel start = ModelLevel.EASY;
+        if (predictLevel || verifyPrediction) {
+            if (predictor == null) {
+                predictor = new LevelPredictor();
+            }
+            start = predictor.predict(gridToSolve);
+            skippedSolves += start.ordinal();
+        }
+        // With -verifyPrediction, the solves of a cascade started higher are only a check and not timed
+        boolean verifying = verifyPrediction && start != ModelLevel.EASY;
+        GridDifficulty difficulty = cascade(gridToSolve, start, !verifying);
+
+        if (verifyPrediction) {
+            // The full cascade gives the rating, the predicted one is only compared with it
+            GridDifficulty full = verifying ? cascade(gridToSolve, ModelLevel.EASY, true) : difficulty;
+            predictedGrids++;
+            if (full != difficulty) {
+                mispredictions++;
+            }
+            difficulty = full;
+        }
+
+        getTimes().addGrid(difficulty, lastTime);
+        if (event.shouldCommit()) {
+            event.gridId = gridId;
+            event.level = modelLevel.name();
+            event.difficulty = difficulty.name();
+            event.commit();
+        }
+        return difficulty;
+    }
+
+    /** Tries the models from the given level up: the grid gets the difficulty of the first model that solves it
+     * without failing nor backtracking, DIABOLIC if even the hard model fails
+     * @param timed whether the solves are part of the rating of the run and go into its times, the checks are not */
+    private GridDifficulty cascade(int[][] gridToSolve, ModelLevel start, boolean timed) {
+        targetGrid = gridToSolve;
+        for (ModelLevel level : ModelLevel.values()) {
+            if (level.compareTo(start) < 0) {
+                continue;
+            }
+            setModelLevel(level);
+            // execute() builds the model of the level before solving it
+            execute();
+
+            lastTime = getModel().getSolver().getMeasures().getTimeCount();
+            if (timed) {
+                getTimes().addSolve(level, lastTime);
+            }
+            long failCount = getModel().getSolver().getMeasures().getFailCount();
+            long backtracks = getModel().getSolver().getMeasures().getBackTrackCount();
+
+            // If we failed / backtracked we try the next model
+            if (failCount == 0 && backtracks == 0) {
+                switch (level) {
+                    case EASY:
+                        return GridDifficulty.EASY;
+                    case MEDIUM:
+                        return GridDifficulty.MEDIUM;
+                    default:
+                        return GridDifficulty.HARD;
+                }
+            }
+        }
+        return GridDifficulty.DIABOLIC;
+    }
+
+    /** Seed of the grid of the given index in the run, it only depends on the run seed and the index so that a grid
+     * is the same whatever the shard generating it */
+    static long gridSeed(long runSeed, long index) {
+        long z = runSeed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Generates the playable grid of the given index in the run, a minimal one with -minimal */
+    int[][] generate(long index, SudokuGridGenerator fullGridGenerator,
+                     PlayableGridGenerator playableGridGenerator) {
+        long gridSeed = gridSeed(seed, index);
+        gridId = index;
+        fullGridGenerator.setSeed(gridSeed);
+        playableGridGenerator.setSeed(gridSeed);
+
+        SolverEvents.GridGeneration event = new SolverEvents.GridGeneration();
+        event.begin();
+        int[] fullGrid = fullGridGenerator.generateGrid();
+        if (event.shouldCommit()) {
+            event.gridId = index;
+            event.commit();
+        }
+        int[][] grid = playableGridGenerator.processGrid(PlayableGridGenerator.toTwoDimensionalArray(fullGrid));
+        if (minimal) {
+            grid = playableGridGenerator.makeMinimal(grid, PlayableGridGenerator.toTwoDimensionalArray(fullGrid));
+        }
+        return grid;
+    }
+
+    /** Rates the grids of a dump file. The singles eliminations are first run on batches of grids: the grids without
+     * solution are dropped and the ones solved by naked singles are EASY without building any model, the others go
+     * through the model cascade. The rated grids are written to the corpus chunk by chunk and only counted, so a dump
+     * of any size is ingested in the memory of a chunk */
+    private static void ingest(Sudoku sudoku, File file) throws IOException {
+        BatchCandidateEliminator eliminator = new BatchCandidateEliminator(sudoku.batchLanes);
+        Map<GridDifficulty, Long> counts = new EnumMap<>(GridDifficulty.class);
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            counts.put(difficulty, 0L);
+        }
+        int chunkSize = sudoku.batchLanes * 64;
+        long index = 0;
+        int dropped = 0;
+        int malformed = 0;
+        int shortcut = 0;
+        int modelled = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath());
+             Corpus.Writer corpus = sudoku.corpusFile != null ? new Corpus.Writer(sudoku.corpusFile.toPath()) : null) {
+            List<int[][]> chunk = new ArrayList<>(chunkSize);
+            String line = reader.readLine();
+            while (line != null || !chunk.isEmpty()) {
+                if (line != null) {
+                    // The grid is the third field of a corpus line, so that corpus files can be ingested as well
+                    String[] fields = line.trim().split("\\s+");
+                    String grid = fields.length >= 3 ? fields[2] : fields[fields.length - 1];
+                    if (!line.startsWith("#") && grid.length() == n * n) {
+                        // A bad line of a large dump is skipped, not the whole dump
+                        try {
+                            chunk.add(PlayableGridGenerator.fromString(grid));
+                        } catch (IllegalArgumentException e) {
+                            malformed++;
+                        }
+                    } else if (!line.startsWith("#") && !line.trim().isEmpty()) {
+                        malformed++;
+                    }
+                    line = reader.readLine();
+                }
+                if (chunk.size() < chunkSize && line != null) {
+                    continue;
+                }
+
+                BatchCandidateEliminator.Outcome[] outcomes = eliminator.evaluate(chunk);
+                for (int k = 0; k < chunk.size(); k++, index++) {
+                    GridDifficulty difficulty;
+                    switch (outcomes[k]) {
+                        case CONTRADICTION:
+                            dropped++;
+                            continue;
+                        case SOLVED_BY_NAKED_SINGLES:
+                            difficulty = GridDifficulty.EASY;
+                            shortcut++;
+                            break;
+                        default:
+                            sudoku.gridId = index;
+                            difficulty = sudoku.rate(chunk.get(k));
+                            modelled++;
+                    }
+                    counts.merge(difficulty, 1L, Long::sum);
+                    if (corpus != null) {
+                        corpus.add(index, difficulty, chunk.get(k));
+                    }
+                }
+                chunk.clear();
+            }
+        }
+
+        System.out.println("Ingested " + index + " grids: " + dropped + " without solution, " + shortcut
+                + " rated EASY by the singles, " + modelled + " rated by the models, " + malformed
+                + " malformed lines skipped");
+        for (GridDifficulty difficulty : GridDifficulty.values()) {
+            System.out.println(difficulty + " GRIDS: " + counts.get(difficulty));
+        }
+    }
+
     public static void main(String[] args) {
         Sudoku sudoku = new Sudoku();
+        try {
+            // The options are read once, the models are then executed without arguments
+            if (!sudoku.setUp(args)) {
+                System.exit(1);
+            }
+        } catch (SetUpException e) {
+            System.exit(1);
+        }
+        if (sudoku.shards < 1 || sudoku.shard < 0 || sudoku.shard >= sudoku.shards) {
+            System.err.println("-shards must be at least 1 and -shard between 0 and " + Math.max(0, sudoku.shards - 1));
+            System.exit(1);
+        }
+        if (sudoku.batchLanes < 1) {
+            System.err.println("-batchLanes must be at least 1");
+            System.exit(1);
+        }
+        if (sudoku.jfrFile != null) {
+            try {
+                SolverEvents.startRecording(sudoku.jfrFile.toPath());
+            } catch (IOException e) {
+                System.err.println("Could not start the flight recording: " + e.getMessage());
+            }
+        }
+        if (sudoku.gridToSolve != null) {
+            solveSingleGrid(sudoku, PlayableGridGenerator.fromString(sudoku.gridToSolve));
+            return;
+        }
+        if (sudoku.ingestFile != null) {
+            try {
+                ingest(sudoku, sudoku.ingestFile);
+            } catch (IOException e) {
+                System.err.println("Could not ingest the grids: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (sudoku.spawnShards > 0) {
+            try {
+                new ShardLauncher(sudoku.spawnShards, sudoku.corpusFile).launch(args);
+            } catch (IOException e) {
+                System.err.println("Sharded generation failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
         SudokuGridGenerator fullGridGenerator = new SudokuGridGenerator();
         PlayableGridGenerator playableGridGenerator = new PlayableGridGenerator(sudoku);
+        if (sudoku.portfolioWorkers > 1) {
+            playableGridGenerator.setPortfolio(new PortfolioSolver(sudoku, sudoku.portfolioWorkers));
+        }
+        playableGridGenerator.setRemovalBatch(sudoku.removalBatch);
 
-        System.out.println("Generating " + N + " sudoku grids and trying to solve them . . .");
+        // This process only handles the grids of its shard: the indices i such that i % shards == shard
+        List<Long> indices = new ArrayList<>();
+        for (long i = sudoku.shard; i < sudoku.gridCount; i += sudoku.shards) {
+            indices.add(i);
+        }
+        Corpus corpus = new Corpus();
+
+        DuplicateFilter duplicates = null;
+        if (sudoku.dedup || sudoku.dedupFile != null) {
+            long expected = sudoku.dedupExpected > 0 ? sudoku.dedupExpected : indices.size();
+            try {
+                duplicates = sudoku.dedupFile == null
+                        ? new DuplicateFilter(expected, sudoku.dedupFalsePositive)
+                        : new DuplicateFilter(sudoku.dedupFile.toPath(), expected, sudoku.dedupFalsePositive);
+            } catch (IOException e) {
+                System.err.println("Could not open the duplicate filter: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        int dropped = 0;
+        boolean warnedFull = false;
+
+        // The grids already logged by the checkpoint are restored and not generated again
+        Checkpoint checkpoint = null;
+        int resumed = 0;
+        if (sudoku.checkpointFile != null) {
+            // The tuned rating strategies depend on timings, a resumed run could rate with others than the logged part
+            if (sudoku.resume && sudoku.autoTune && sudoku.tuneRating) {
+                System.err.println("-resume cannot be used with -autoTune -tuneRating, the tuned strategies of the"
+                        + " logged grids are not known");
+                System.exit(1);
+            }
+            // The header holds every option changing the grids or their rating, a resumed run must have the same
+            String header = "# checkpoint seed=" + sudoku.seed + " grids=" + sudoku.gridCount
+                    + " shards=" + sudoku.shards + " shard=" + sudoku.shard + " minimal=" + sudoku.minimal
+                    + " searchEasy=" + sudoku.easySearch + " searchMedium=" + sudoku.mediumSearch
+                    + " searchHard=" + sudoku.hardSearch + " restarts=" + sudoku.restarts
+                    + " predictLevel=" + (sudoku.predictLevel && !sudoku.verifyPrediction)
+                    + " tuneRating=" + (sudoku.autoTune && sudoku.tuneRating);
+            try {
+                checkpoint = new Checkpoint(sudoku.checkpointFile.toPath(), header, sudoku.resume,
+                        sudoku.overwriteCheckpoint, sudoku.checkpointEvery);
+            } catch (IOException e) {
+                System.err.println("Could not open the checkpoint: " + e.getMessage());
+                System.exit(1);
+            }
+            Set<Long> done = new HashSet<>();
+            for (Checkpoint.Record record : checkpoint.getRecovered()) {
+                gridsAssessedBucket.get(record.difficulty).add(record.grid);
+                corpus.add(record.index, record.difficulty, record.grid);
+                sudoku.getTimes().addGrid(record.difficulty, record.time);
+                if (duplicates != null) {
+                    duplicates.add(record.grid);
+                }
+                done.add(record.index);
+            }
+            indices.removeIf(done::contains);
+            resumed = done.size();
+            if (resumed > 0) {
+                System.out.println("Resumed " + resumed + " grids from " + sudoku.checkpointFile);
+            }
+            Checkpoint toClose = checkpoint;
+            getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    toClose.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+        } else if (sudoku.resume) {
+            System.err.println("-resume needs the -checkpoint file of the run");
+            System.exit(1);
+        }
 
-        for (int i = 0; i < N; i++) {
+        if (duplicates != null && !indices.isEmpty()) {
+            // A full filter would drop more new grids than asked for, the run is refused rather than silently thinned
+            if (duplicates.isFull()) {
+                System.err.println("The duplicate filter " + sudoku.dedupFile + " is full: it holds "
+                        + duplicates.getAdded() + " grids and was sized for " + duplicates.getExpected()
+                        + ", start a new one with a larger -dedupExpected");
+                System.exit(1);
+            }
+            if (duplicates.getAdded() + indices.size() > duplicates.getExpected()) {
+                System.err.println("Warning: the duplicate filter holds " + duplicates.getAdded()
+                        + " grids and was sized for " + duplicates.getExpected() + ", it will be full before the end"
+                        + " of the run and drop more new grids than the " + duplicates.getDesignFalsePositiveRate()
+                        + " asked for");
+            }
+        }
 
-            // Every 10% of the grids we print a message
-            if (i % (N / 10) == 0 && i != 0) {
-                System.out.println("Solved " + i + " grids");
-            }
-            // We generate N full grids
-            int[][] grid = PlayableGridGenerator.toTwoDimensionalArray(fullGridGenerator.generateGrid());
-            int[][] gridToSolve = playableGridGenerator.processGrid(grid);
-            sudoku.targetGrid = gridToSolve;
-            // We first try to solve with the easy model
-            sudoku.setModelLevel(ModelLevel.EASY);
-            sudoku.buildModel();
-            sudoku.execute(args);
-
-            float time = sudoku.getModel().getSolver().getMeasures().getTimeCount();
-            long failCount = sudoku.getModel().getSolver().getMeasures().getFailCount();
-            long backtracks = sudoku.getModel().getSolver().getMeasures().getBackTrackCount();
-
-            if(failCount > 0 || backtracks > 0) {
-                // We failed / backtracked with easy model so we try the medium
-                sudoku.setModelLevel(ModelLevel.MEDIUM);
-                sudoku.buildModel();
-                sudoku.execute(args);
-
-                time = sudoku.getModel().getSolver().getMeasures().getTimeCount();
-                failCount = sudoku.getModel().getSolver().getMeasures().getFailCount();
-                backtracks = sudoku.getModel().getSolver().getMeasures().getBackTrackCount();
-
-                if(failCount > 0 || backtracks > 0){
-                    // We failed / backtracked with easy model so we try the hard
-
-                    sudoku.setModelLevel(ModelLevel.HARD);
-                    sudoku.buildModel();
-                    sudoku.execute(args);
-
-                    time = sudoku.getModel().getSolver().getMeasures().getTimeCount();
-                    failCount = sudoku.getModel().getSolver().getMeasures().getFailCount();
-                    backtracks = sudoku.getModel().getSolver().getMeasures().getBackTrackCount();
-                    if(failCount > 0 || backtracks > 0){
-                        gridsAssessedBucket.get(GridDifficulty.DIABOLIC).add(gridToSolve);
-                    }
-                    else{
-                        gridsAssessedBucket.get(GridDifficulty.HARD).add(gridToSolve);
-                    }
-                } else {
-                    gridsAssessedBucket.get(GridDifficulty.MEDIUM).add(gridToSolve);
+        // With the auto-tune, a first sample of grids is generated to benchmark the strategies on, these grids are
+        // then rated like the others
+        List<int[][]> sample = new ArrayList<>();
+        if (sudoku.autoTune) {
+            System.out.println("Auto-tuning the search strategies on " + sudoku.tuneSample + " grids . . .");
+            for (int k = 0; k < Math.min(sudoku.tuneSample, indices.size()); k++) {
+                sample.add(sudoku.generate(indices.get(k), fullGridGenerator, playableGridGenerator));
+            }
+            SearchTuner tuner = new SearchTuner(sudoku);
+            sudoku.setUniquenessSearch(tuner.tuneUniqueness(sample));
+            if (sudoku.tuneRating) {
+                for (ModelLevel level : ModelLevel.values()) {
+                    sudoku.setSearch(level, tuner.tuneLevel(level, sample));
                 }
+            }
+        }
+        sudoku.flagClassificationChanges();
+
+        System.out.println("Generating " + indices.size() + " sudoku grids and trying to solve them . . .");
+
+        // A run that could not save its grids ends with an error status, a shard launcher must not merge its files
+        boolean failed = false;
 
+        for (int k = 0; k < indices.size(); k++) {
+
+            // Every 10% of the grids we print a message
+            if (k % Math.max(1, indices.size() / 10) == 0 && k != 0) {
+                System.out.println("Solved " + k + " grids");
+            }
+            int[][] gridToSolve;
+            if (k < sample.size()) {
+                gridToSolve = sample.get(k);
             } else {
-                gridsAssessedBucket.get(GridDifficulty.EASY).add(gridToSolve);
+                gridToSolve = sudoku.generate(indices.get(k), fullGridGenerator, playableGridGenerator);
+            }
+            // The grid only goes into the filter once logged: a grid rated when the run is killed is not taken for a
+            // duplicate on resume
+            if (duplicates != null && duplicates.mightContain(gridToSolve)) {
+                dropped++;
+                continue;
+            }
+            sudoku.gridId = indices.get(k);
+            GridDifficulty difficulty = sudoku.rate(gridToSolve);
+            gridsAssessedBucket.get(difficulty).add(gridToSolve);
+            corpus.add(indices.get(k), difficulty, gridToSolve);
+            if (checkpoint != null) {
+                try {
+                    checkpoint.append(indices.get(k), difficulty, gridToSolve, sudoku.lastTime);
+                } catch (IOException e) {
+                    System.err.println("Could not write the checkpoint, stopping the run: " + e.getMessage());
+                    failed = true;
+                    break;
+                }
+            }
+            if (duplicates != null) {
+                if (duplicates.isFull() && !warnedFull) {
+                    System.err.println("Warning: the duplicate filter is full (" + duplicates.getExpected()
+                            + " grids), its rate of false positives is now over "
+                            + duplicates.getDesignFalsePositiveRate());
+                    warnedFull = true;
+                }
+                duplicates.add(gridToSolve);
             }
-            sudoku.timeTaken.add(time);
+        }
+        if (checkpoint != null) {
+            try {
+                checkpoint.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (duplicates != null) {
+            duplicates.close();
+            System.out.println("Dropped " + dropped + " duplicate grids, the filter holds " + duplicates.getAdded()
+                    + " grids out of " + duplicates.getExpected() + " (estimated rate of false positives "
+                    + duplicates.getFalsePositiveRate() + ")");
         }
 
-        System.out.println("DONE TRYING TO SOLVE " + N + " GRIDS");
-        if(!sudoku.timeTaken.isEmpty()) {
-            System.out.println("Average time taken: " + sudoku.timeTaken.stream().reduce(0f, Float::sum) / sudoku.timeTaken.size());
-            System.out.println("Max time taken: " + sudoku.timeTaken.stream().max(Float::compareTo).get());
+        if (sudoku.multiply > 0) {
+            sudoku.multiply(corpus);
+        }
+
+        if (sudoku.corpusFile != null) {
+            try {
+                corpus.write(sudoku.corpusFile.toPath());
+            } catch (IOException e) {
+                System.err.println("Could not write the corpus: " + e.getMessage());
+                failed = true;
+            }
         }
 
+        System.out.println("DONE TRYING TO SOLVE " + (resumed + indices.size()) + " GRIDS");
+        System.out.println("Uniqueness checks: " + playableGridGenerator.getUniquenessChecks());
+        sudoku.getTimes().print();
+
+        sudoku.printPredictionReport();
+
         // We conclude by saying how much grids of each difficulty we have
         System.out.println("EASY GRIDS: " + gridsAssessedBucket.get(GridDifficulty.EASY).size());
         System.out.println("MEDIUM GRIDS: " + gridsAssessedBucket.get(GridDifficulty.MEDIUM).size());
         System.out.println("HARD GRIDS: " + gridsAssessedBucket.get(GridDifficulty.HARD).size());
         System.out.println("DIABOLIC GRIDS: " + gridsAssessedBucket.get(GridDifficulty.DIABOLIC).size());
+        sudoku.printInheritedVariants();
+
+        if (failed) {
+            System.exit(1);
+        }
+        // The shards and the corpus runs are not interactive
+        if (sudoku.corpusFile != null) {
+            return;
+        }
 
         // Interactive part, we ask the user if he wants to see a grid of a certain difficulty
         Scanner scanner = new Scanner(System.in);
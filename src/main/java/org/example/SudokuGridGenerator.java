@@ -1,11 +1,18 @@
 package org.example;
 import java.util.Collections;
 import java.util.ArrayList;
+import java.util.Random;
 
 
 /** This class is responsible for generating N full sudoku grids*/
 class SudokuGridGenerator {
     private int[] grid;
+    private final Random random = new Random();
+
+    /** Makes the next grids generated only depend on the given seed */
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
 
     /**
      *Generates a valid 9 by 9 Sudoku grid with 1 through 9 appearing only once in every box, row, and column
@@ -20,7 +27,7 @@ class SudokuGridGenerator {
         //loads all boxes with numbers 1 through 9
         for(int i = 0; i < 81; i++)
         {
-            if(i%9 == 0) Collections.shuffle(arr);
+            if(i%9 == 0) Collections.shuffle(arr, random);
             int perBox = ((i / 3) % 3) * 9 + ((i % 27) / 9) * 3 + (i / 27) * 27 + (i %3);
             grid[perBox] = arr.get(i%9);
         }